@@ -1,10 +1,8 @@
 package org.lida.Entity;
 
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 // Class that contains the useful data for the analysis of an AnalysisEntity (both file or directory),
 // and also the graph visualization data of the AnalysisEntity.
@@ -12,6 +10,16 @@ public class AnalysisEntity {
 
 	// ---------- File variables ----------
 
+	// Counter of the ids given to the AnalysisEntities. Ids start from 1, so they are never 0
+	private static final AtomicInteger nextId = new AtomicInteger(1);
+
+	// Id of the AnalysisEntity, different for every AnalysisEntity created. Used to refer to it with a primitive value
+	private final int id = nextId.getAndIncrement();
+
+	public int getId() {
+		return id;
+	}
+
 	// File or directory name
 	private String name;
 
@@ -76,6 +84,17 @@ public class AnalysisEntity {
 		return storage_size;
 	}
 
+	// The last modified time of the AnalysisEntity's file in milliseconds. Used to find the changed files
+	private long modifiedTime;
+
+	public void setModifiedTime(long modifiedTime) {
+		this.modifiedTime = modifiedTime;
+	}
+
+	public long getModifiedTime() {
+		return modifiedTime;
+	}
+
 	public String getStorageSizeString() {
 		return storageSizeString(storage_size);
 	}
@@ -186,15 +205,25 @@ public class AnalysisEntity {
 		return variables;
 	}
 
-	public Map<String, String> getVariablesMap() {
-		return variables.stream().collect(Collectors.toMap(Variable::name, Variable::value));
+	public void clearVariables() {
+		variables.clear();
+	}
+
+	// Returns the value of a Variable by its name, or null if there isn't one. If the name was assigned more than once, the last value is returned
+	public String getVariableValue(String name) {
+		for (int i = variables.size() - 1; i >= 0; i--) {
+			if (variables.get(i).name().equals(name)) return variables.get(i).value();
+		}
+		return null;
 	}
 
-	// List of Identifiers that this AnalysisEntity has
+	// List of Identifiers that this AnalysisEntity has, and the set of the same Identifiers to check them in constant time
 	private final List<Identifier> identifiers = new ArrayList<>();
+	private final Set<Identifier> identifierSet = new HashSet<>();
 
 	public void addIdentifier(Identifier identifier) {
 		identifiers.add(identifier);
+		identifierSet.add(identifier);
 	}
 
 	public List<Identifier> getIdentifiers() {
@@ -202,16 +231,21 @@ public class AnalysisEntity {
 	}
 
 	public boolean hasIdentifier(Identifier identifier) {
-		return identifiers.contains(identifier);
+		return identifierSet.contains(identifier);
 	}
 
-	// List of FileDependency between this and other Entity on which this entity depends on
-	private final List<FileDependency> dependencies = new ArrayList<>();
+	public void clearIdentifiers() {
+		identifiers.clear();
+		identifierSet.clear();
+	}
+
+	// Map of FileDependency between this and other Entity on which this entity depends on, by the other Entity and in insertion order.
+	// There is a single FileDependency for each other Entity
+	private final Map<AnalysisEntity, FileDependency> dependencies = new LinkedHashMap<>();
 
 	public void addDependency(FileDependency dependency) {
-		if (!dependencies.contains(dependency)) {
-			dependencies.add(dependency);
-			dependency.getEntity().addDependant(new FileDependency(this, dependency.getDependencies()));
+		if (dependencies.putIfAbsent(dependency.getEntity(), dependency) == null) {
+			dependency.getEntity().addDependant(new FileDependency(this, dependency));
 		}
 	}
 
@@ -221,26 +255,60 @@ public class AnalysisEntity {
 		}
 	}
 
-	public List<FileDependency> getDependencies() {
-		return dependencies;
+	// Adds the Dependencies found by the link of this Entity, without adding this Entity to the dependants of their Entities.
+	// The link adds the dependants afterwards with addDependants, so that each Entity is changed only by the task merging it
+	public void addLinkedDependencies(List<FileDependency> dependencies) {
+		for (FileDependency dependency : dependencies) {
+			this.dependencies.putIfAbsent(dependency.getEntity(), dependency);
+		}
+	}
+
+	public Collection<FileDependency> getDependencies() {
+		return Collections.unmodifiableCollection(dependencies.values());
+	}
+
+	// Returns the FileDependency on the given Entity, or null if this Entity doesn't depend on it
+	public FileDependency getDependency(AnalysisEntity entity) {
+		return dependencies.get(entity);
 	}
 
 	public boolean hasDependencies() {
 		return !dependencies.isEmpty();
 	}
 
+	// Removes all the Dependencies of this Entity, removing it also from the dependants of their Entities
+	public void clearDependencies() {
+		for (AnalysisEntity entity : dependencies.keySet()) {
+			entity.removeDependant(this);
+		}
+		dependencies.clear();
+	}
+
 
-	// List of AnalysisEntities that depends on this Entity
-	private final List<FileDependency> dependants = new ArrayList<>();
+	// Map of the FileDependency of the AnalysisEntities that depends on this Entity, by the depending Entity and in insertion order
+	private final Map<AnalysisEntity, FileDependency> dependants = new LinkedHashMap<>();
 
 	public void addDependant(FileDependency dependant) {
-		if (!dependants.contains(dependant)) {
-			dependants.add(dependant);
+		dependants.putIfAbsent(dependant.getEntity(), dependant);
+	}
+
+	public void addDependants(List<FileDependency> dependants) {
+		for (FileDependency dependant : dependants) {
+			addDependant(dependant);
 		}
 	}
 
-	public List<FileDependency> getDependants() {
-		return dependants;
+	public Collection<FileDependency> getDependants() {
+		return Collections.unmodifiableCollection(dependants.values());
+	}
+
+	// Returns the FileDependency of the given Entity on this Entity, or null if it doesn't depend on this Entity
+	public FileDependency getDependant(AnalysisEntity entity) {
+		return dependants.get(entity);
+	}
+
+	public void removeDependant(AnalysisEntity entity) {
+		dependants.remove(entity);
 	}
 
 	public boolean hasDependants() {
@@ -1,6 +1,8 @@
 package org.lida.Entity;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 // Class to represent the dependency between two files
 public class FileDependency {
@@ -19,36 +21,54 @@ public class FileDependency {
 	}
 
 
+	// Class storing the list of Dependencies with the sets of the same Dependencies and of their rules names, to check the unique ones in constant time.
+	// It's shared by the FileDependency of entity1 and by its copy inside the dependants of entity, so the list and the sets always change together
+	private static class DependencyList {
+		private final List<Dependency> dependencies;
+		private final Set<Dependency> dependencySet = new HashSet<>();
+		private final Set<String> ruleNames = new HashSet<>();
+
+		private DependencyList(List<Dependency> dependencies) {
+			this.dependencies = dependencies;
+			for (Dependency dependency : dependencies) {
+				dependencySet.add(dependency);
+				ruleNames.add(dependency.ruleName());
+			}
+		}
+	}
+
 	// List of Dependencies that entity1 has on entity
-	private final List<Dependency> dependencies;
+	private final DependencyList dependencyList;
 
 	public final List<Dependency> getDependencies() {
-		return dependencies;
+		return dependencyList.dependencies;
 	}
 
 	public void addUniqueDependency(Dependency dependency) {
-		for (Dependency oldDependency : dependencies) {
-			if (oldDependency.equals(dependency)) {
-				return;
-			}
+		if (dependencyList.dependencySet.add(dependency)) {
+			dependencyList.ruleNames.add(dependency.ruleName());
+			dependencyList.dependencies.add(dependency);
 		}
-		dependencies.add(dependency);
 	}
 
 	public void addUniqueRuleDependency(Dependency dependency) {
-		for (Dependency oldDependency : dependencies) {
-			if (oldDependency.ruleName().equals(dependency.ruleName())) {
-				return;
-			}
+		if (dependencyList.ruleNames.add(dependency.ruleName())) {
+			dependencyList.dependencySet.add(dependency);
+			dependencyList.dependencies.add(dependency);
 		}
-		dependencies.add(dependency);
 	}
 
-	// --------------------- Constructor ---------------------
+	// --------------------- Constructors ---------------------
 
 	public FileDependency(AnalysisEntity entity, List<Dependency> dependencies) {
 		this.entity = entity;
-		this.dependencies = dependencies;
+		this.dependencyList = new DependencyList(dependencies);
+	}
+
+	// Creates the copy of a FileDependency stored inside the dependants of its entity, directed to the given depending entity and sharing its Dependencies
+	public FileDependency(AnalysisEntity entity, FileDependency dependency) {
+		this.entity = entity;
+		this.dependencyList = dependency.dependencyList;
 	}
 
 }
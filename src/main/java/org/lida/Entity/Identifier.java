@@ -1,12 +1,13 @@
 package org.lida.Entity;
 
 // Record containing one of the Identifiers of an Entity
-public record Identifier(String name, String ruleName, int key, boolean hidden) {
+public record Identifier(String name, String ruleName, int key, boolean hidden, String qualifiedName) {
 	/*
 	The data inside the record are:
 		name of the Identifier,
 		name of the rule that found it,
 		key used in case of Identifiers with the same name,
-		hidden flag indicating whether it is hidden from the user
+		hidden flag indicating whether it is hidden from the user,
+		qualified name of the Identifier, unique inside its language (null if its rule doesn't declare one)
 	 */
 }
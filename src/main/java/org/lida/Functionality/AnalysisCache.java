@@ -0,0 +1,198 @@
+package org.lida.Functionality;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.lida.Entity.AnalysisEntity;
+import org.lida.Entity.Identifier;
+import org.lida.Entity.Variable;
+import org.lida.Languages.CodeReader;
+import org.lida.Languages.LanguageRule;
+import org.lida.Languages.LineProcessResult;
+
+
+// Class storing on disk the results of an analysis, so that the files that didn't change aren't read again when the same directory is analyzed.
+// Each file is identified by its path, last modified time and size, while the hashes of the file types and rules files discard the results found with older rules
+public class AnalysisCache {
+
+	// Version of the cached data. It must be increased every time the data read from the files changes, so that older caches are discarded
+	private static final int CACHE_VERSION = 3;
+
+	// Record storing a dependency rule match found in a file
+	public record CachedMatch(int line, String match, int ruleIndex) {
+		/*
+		The data inside the record are:
+			position of the matched line inside the file's matched lines,
+			string matched by the rule,
+			position of the rule inside its language's rules
+		 */
+	}
+
+	// Record storing the results of a single file
+	public record CachedFile(long modifiedTime, long size, String rulesHash, int lineCount, List<Variable> variables, List<Identifier> identifiers, List<String> matchedLines, List<CachedMatch> dependencyMatches) {
+		/*
+		The data inside the record are:
+			last modified time of the file in milliseconds,
+			size of the file in bytes,
+			hash of the rules used to read the file, null for non-code files,
+			number of lines of the file,
+			Variables found in the file,
+			Identifiers found in the file, before their keys are assigned,
+			lines of the file matched by the dependency rules, stored once even if matched more times,
+			dependency rules matches, in the order they have been found
+		 */
+	}
+
+	// Record storing the content of a cache file
+	public record CacheData(int version, String fileTypesHash, Map<String, CachedFile> files) {
+		/*
+		The data inside the record are:
+			version of the cached data,
+			hash of the file types file used for the analysis,
+			mapping of every file path to its results
+		 */
+	}
+
+	// --------------------- Cache data ---------------------
+
+	// File storing the cache of the analyzed directory
+	private final File cacheFile;
+
+	// Hash of the file types file, that decides which files are code and their language
+	private final String fileTypesHash;
+
+	// Results loaded from the cache file. Read-only during the analysis
+	private final Map<String, CachedFile> loadedFiles;
+
+	// Results of the files found by the current analysis, which will be written to the cache file. Files that no longer exist are so removed from the cache
+	private final Map<String, CachedFile> currentFiles = new ConcurrentHashMap<>();
+
+	// --------------------- Constructor ---------------------
+
+	private AnalysisCache(File cacheFile, String fileTypesHash, Map<String, CachedFile> loadedFiles) {
+		this.cacheFile = cacheFile;
+		this.fileTypesHash = fileTypesHash;
+		this.loadedFiles = loadedFiles;
+	}
+
+	// Loads the cache of a directory from the cache directory. If it's missing, or it was written with other file types or another version, the cache starts empty
+	public static AnalysisCache load(File cacheDirectory, Path directory, String fileTypesHash) {
+		// Each analyzed directory has its own cache file, named after the hash of its path
+		File cacheFile = new File(cacheDirectory, hash(directory.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8)) + ".json.gz");
+
+		Map<String, CachedFile> loadedFiles = Map.of();
+		if (cacheFile.isFile()) {
+			try (InputStream inputStream = new GZIPInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+				CacheData cacheData = new ObjectMapper().readValue(inputStream, CacheData.class);
+
+				// We use the cached results only if they were found by this version with the same file types
+				if (cacheData.version() == CACHE_VERSION && fileTypesHash.equals(cacheData.fileTypesHash()) && cacheData.files() != null) {
+					loadedFiles = cacheData.files();
+				}
+			} catch (Exception e) {
+				System.err.println("Error while loading the analysis cache: " + e.getMessage());
+			}
+		}
+
+		return new AnalysisCache(cacheFile, fileTypesHash, loadedFiles);
+	}
+
+	// --------------------- Public functions ---------------------
+
+	// Returns the cached results of a file if it didn't change since they were stored, or null otherwise
+	public CachedFile get(AnalysisEntity entity, long modifiedTime) {
+		CachedFile cachedFile = loadedFiles.get(entity.getPath());
+		if (cachedFile == null || cachedFile.modifiedTime() != modifiedTime || cachedFile.size() != entity.getStorageSize()) return null;
+
+		// Code files results are valid only if they were found with the current rules of their language
+		if (!Objects.equals(cachedFile.rulesHash(), getRulesHash(entity))) return null;
+
+		// The results are still valid, so we keep them for the next analysis
+		currentFiles.put(entity.getPath(), cachedFile);
+		return cachedFile;
+	}
+
+	// Stores the results of a non-code file, that only has its line count
+	public void put(AnalysisEntity entity, long modifiedTime) {
+		currentFiles.put(entity.getPath(), new CachedFile(modifiedTime, entity.getStorageSize(), null, entity.getLineCount(), List.of(), List.of(), List.of(), List.of()));
+	}
+
+	// Stores the results of a code file, once its Variables have been filled
+	public void put(AnalysisEntity entity, long modifiedTime, List<Identifier> identifiers, List<LineProcessResult> dependencyMatches) {
+		List<String> matchedLines = new ArrayList<>();
+		List<CachedMatch> cachedMatches = new ArrayList<>(dependencyMatches.size());
+
+		// Consecutive matches often come from the same line, so each line is stored only once
+		Map<String, Integer> lineToPosition = new HashMap<>();
+		for (LineProcessResult dependencyMatch : dependencyMatches) {
+			int position = lineToPosition.computeIfAbsent(dependencyMatch.line(), line -> {
+				matchedLines.add(line);
+				return matchedLines.size() - 1;
+			});
+
+			cachedMatches.add(new CachedMatch(position, dependencyMatch.match(), CodeReader.getRuleIndex(entity.getFileType(), dependencyMatch.languageRule())));
+		}
+
+		currentFiles.put(entity.getPath(), new CachedFile(modifiedTime, entity.getStorageSize(), getRulesHash(entity), entity.getLineCount(),
+				new ArrayList<>(entity.getVariables()), identifiers, matchedLines, cachedMatches));
+	}
+
+	// Rebuilds the dependency rules matches of a cached code file. Returns null if a rule can't be found, so the file must be read again
+	public static List<LineProcessResult> getDependencyMatches(AnalysisEntity entity, CachedFile cachedFile) {
+		List<LineProcessResult> dependencyMatches = new ArrayList<>(cachedFile.dependencyMatches().size());
+
+		for (CachedMatch cachedMatch : cachedFile.dependencyMatches()) {
+			LanguageRule rule = CodeReader.getRule(entity.getFileType(), cachedMatch.ruleIndex());
+			if (rule == null || cachedMatch.line() < 0 || cachedMatch.line() >= cachedFile.matchedLines().size()) return null;
+
+			dependencyMatches.add(new LineProcessResult(cachedFile.matchedLines().get(cachedMatch.line()), cachedMatch.match(), rule));
+		}
+
+		return dependencyMatches;
+	}
+
+	// Writes the results of the current analysis to the cache file
+	public void save() {
+		try {
+			Files.createDirectories(cacheFile.getParentFile().toPath());
+
+			// We write on a temporary file that then replaces the old cache, so an interrupted write can't corrupt it
+			File temporaryFile = new File(cacheFile.getPath() + ".tmp");
+			try (OutputStream outputStream = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+				new ObjectMapper().writeValue(outputStream, new CacheData(CACHE_VERSION, fileTypesHash, currentFiles));
+			}
+			Files.move(temporaryFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			System.err.println("Error while saving the analysis cache: " + e.getMessage());
+		}
+	}
+
+	// --------------------- Helper functions ---------------------
+
+	// Helper function to get the hash of the rules used to read an Entity's file, or null for non-code files
+	private static String getRulesHash(AnalysisEntity entity) {
+		return entity.isCode() ? CodeReader.getRulesHash(entity.getFileType()) : null;
+	}
+
+	// Returns the hexadecimal SHA-256 hash of some content
+	public static String hash(byte[] content) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+		} catch (NoSuchAlgorithmException e) {
+
+			// Every Java platform must support SHA-256
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,338 @@
+package org.lida.Functionality;
+
+import javafx.scene.control.TreeItem;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.lida.Entity.AnalysisEntity;
+import org.lida.Entity.FileDependency;
+import org.lida.Entity.Identifier;
+import org.lida.Languages.LineProcessResult;
+import org.lida.Languages.RuleProfiler;
+import org.lida.Languages.RuleTemplate;
+
+
+// Class containing the state of a single analysis: its tree and the symbol index used to link its Entities.
+// Each analysis has its own context, so several analyses can run at the same time, sharing only the languages rules
+public class AnalysisContext {
+
+	// --------------------- Analysis data ---------------------
+
+	// Root directory of the analysis
+	private final Path root;
+
+	public Path getRoot() {
+		return root;
+	}
+
+	// The root of the AnalysisEntity tree, corresponding to the analyzed directory. It's null until the scan is completed
+	private volatile TreeItem<AnalysisEntity> treeRoot = null;
+
+	public TreeItem<AnalysisEntity> getTreeRoot() {
+		return treeRoot;
+	}
+
+	public void setTreeRoot(TreeItem<AnalysisEntity> treeRoot) {
+		this.treeRoot = treeRoot;
+	}
+
+	// Code Entities found by the scan in the order of the walk, handed to the link. It's empty until the scan is completed,
+	// and it isn't updated by the watch mode, which links the changed Entities by itself
+	private volatile List<AnalysisEntity> codeEntities = List.of();
+
+	public List<AnalysisEntity> getCodeEntities() {
+		return codeEntities;
+	}
+
+	public void setCodeEntities(List<AnalysisEntity> codeEntities) {
+		this.codeEntities = List.copyOf(codeEntities);
+	}
+
+	// Flag indicating whether the analysis has been completed, so that its directory can be watched
+	private volatile boolean completed = false;
+
+	public boolean isCompleted() {
+		return completed;
+	}
+
+	public void setCompleted(boolean completed) {
+		this.completed = completed;
+	}
+
+	// Cache of the analysis results. It's null if the cache setting is disabled, and after the analysis is completed
+	private volatile AnalysisCache analysisCache = null;
+
+	public AnalysisCache getAnalysisCache() {
+		return analysisCache;
+	}
+
+	public void setAnalysisCache(AnalysisCache analysisCache) {
+		this.analysisCache = analysisCache;
+	}
+
+	// Profile of the rules applied by the scan and the link of the analysis. It's null if the profile setting was disabled when the analysis started
+	private volatile RuleProfiler ruleProfiler = null;
+
+	public RuleProfiler getRuleProfiler() {
+		return ruleProfiler;
+	}
+
+	public void setRuleProfiler(RuleProfiler ruleProfiler) {
+		this.ruleProfiler = ruleProfiler;
+	}
+
+	// Returns the profile to which the rules applied now are added. The updates of the watch mode aren't profiled,
+	// so it's null once the analysis is completed and the profile only covers the analysis itself
+	public RuleProfiler getActiveRuleProfiler() {
+		return completed ? null : ruleProfiler;
+	}
+
+	// --------------------- Symbol index ---------------------
+
+	// Mapping of every Identifier to its AnalysisEntity. Used by CodeReader to get an Identifier's Entity after finding it in a code file
+	private final Map<Identifier, AnalysisEntity> identifierToEntity = new ConcurrentHashMap<>();
+
+	// Mapping of every Identifier name to its Identifiers. Used by CodeReader to get an Identifier by its name when searching for dependencies
+	private final Map<String, List<Identifier>> nameToIdentifiers = new ConcurrentHashMap<>();
+
+	// Mapping of every qualified name to its Identifiers, in the same order of the names lists. Used by CodeReader to resolve the Dependencies of the rules
+	// catching a qualified name. More files can declare the same qualified name, so all of their Identifiers are kept
+	private final Map<String, List<Identifier>> qualifiedNameToIdentifiers = new ConcurrentHashMap<>();
+
+	// Mapping of every Identifier name to the counter of its keys. Used to give a different key to every Identifier with the same name
+	private final Map<String, AtomicInteger> nameToKeyCounter = new ConcurrentHashMap<>();
+
+	// Store of every code Entity's dependency rules matches, found while reading the file during the scan and resolved during the link
+	private final DependencyMatchStore dependencyMatchStore = new DependencyMatchStore();
+
+	// Mapping of every name found by the dependency rules matches to the Entities that found it. Used to link again the Entities when Identifiers with that name change
+	private final Map<String, Set<AnalysisEntity>> nameToMatchingEntities = new ConcurrentHashMap<>();
+
+	// Code Entities with matches of constant dependency rules, which can depend on any Identifier of their language
+	private final Set<AnalysisEntity> constantMatchingEntities = ConcurrentHashMap.newKeySet();
+
+	// Mapping of every Variable name to the index of its values, built the first time a constant dependency rule needs it during the link.
+	// Each index maps a value to the Entities with Identifiers having that value, so the rule checks only their Identifiers instead of all of them
+	private final Map<String, Map<String, Set<AnalysisEntity>>> variableToValueIndex = new ConcurrentHashMap<>();
+
+	// Mapping of every path inside the analysis tree to its node. Used to find the Entities of the changed files
+	private final Map<Path, TreeItem<AnalysisEntity>> pathToNode = new ConcurrentHashMap<>();
+
+	// --------------------- Constructor ---------------------
+
+	public AnalysisContext(Path root) {
+		this.root = root;
+	}
+
+	// --------------------- Symbol index functions ---------------------
+
+	// Returns the Entity of an Identifier, or null if the Identifier isn't part of the analysis
+	public AnalysisEntity getEntity(Identifier identifier) {
+		return identifierToEntity.get(identifier);
+	}
+
+	// Returns the Identifiers with the given name, or null if there aren't any
+	public List<Identifier> getIdentifiers(String name) {
+		return nameToIdentifiers.get(name);
+	}
+
+	// Returns the Identifiers with the given qualified name, or null if there aren't any
+	public List<Identifier> getQualifiedIdentifiers(String qualifiedName) {
+		return qualifiedNameToIdentifiers.get(qualifiedName);
+	}
+
+	// Returns all the Identifiers of the analysis
+	public Set<Identifier> getAllIdentifiers() {
+		return identifierToEntity.keySet();
+	}
+
+	// Returns the dependency rules matches of a code Entity
+	public List<LineProcessResult> getDependencyMatches(AnalysisEntity entity) {
+		return dependencyMatchStore.get(entity);
+	}
+
+	// Returns the code Entities with matches of constant dependency rules
+	public Set<AnalysisEntity> getConstantMatchingEntities() {
+		return constantMatchingEntities;
+	}
+
+	// Adds the Identifiers and the dependency matches read from a code file to the symbol index, adding to entitiesToLink the Entities whose
+	// Dependencies could change because of it
+	public void addFileData(AnalysisEntity entity, List<Identifier> identifiers, List<LineProcessResult> dependencyMatches, Set<AnalysisEntity> entitiesToLink) {
+		addIdentifiers(entity, identifiers);
+		addDependencyMatches(entity, dependencyMatches);
+
+		// Entities that found the name of a new Identifier could now depend on it
+		for (Identifier identifier : entity.getIdentifiers()) {
+			addMatchingEntities(identifier, entitiesToLink);
+		}
+	}
+
+	// Adds the Identifiers read from a code file to the symbol index. It can be called by many threads at the same time, but the keys
+	// of the Identifiers with the same name depend on the order of the calls, so the analysis adds its files in the order of their paths
+	public void addIdentifiers(AnalysisEntity entity, List<Identifier> identifiers) {
+		// We iterate on each Identifier
+		for (Identifier identifier : identifiers) {
+			Identifier newIdentifier = identifier;
+
+			// Identifiers with the same name must have different keys, so we take the next key of the name's counter.
+			// The first Identifier of each name keeps the key 0
+			int key = nameToKeyCounter.computeIfAbsent(identifier.name(), k -> new AtomicInteger()).getAndIncrement();
+			if (key != identifier.key()) {
+				newIdentifier = new Identifier(identifier.name(), identifier.ruleName(), key, identifier.hidden(), identifier.qualifiedName());
+			}
+
+			// We can finally add the new Identifier to its Entity and to the maps. The list of the name is updated atomically by the map
+			entity.addIdentifier(newIdentifier);
+			identifierToEntity.put(newIdentifier, entity);
+			final Identifier finalIdentifier = newIdentifier;
+			nameToIdentifiers.compute(newIdentifier.name(), (k, sameNameIdentifiers) -> {
+				if (sameNameIdentifiers == null) sameNameIdentifiers = new ArrayList<>();
+				sameNameIdentifiers.add(finalIdentifier);
+				return sameNameIdentifiers;
+			});
+
+			// The list of the qualified name is updated in the same way
+			if (newIdentifier.qualifiedName() != null) {
+				qualifiedNameToIdentifiers.compute(newIdentifier.qualifiedName(), (k, sameQualifiedNameIdentifiers) -> {
+					if (sameQualifiedNameIdentifiers == null) sameQualifiedNameIdentifiers = new ArrayList<>();
+					sameQualifiedNameIdentifiers.add(finalIdentifier);
+					return sameQualifiedNameIdentifiers;
+				});
+			}
+		}
+
+		// The Entity is added to the Variables indexes already built, if it has Identifiers that can be found through them
+		if (!identifiers.isEmpty()) {
+			for (Map.Entry<String, Map<String, Set<AnalysisEntity>>> entry : variableToValueIndex.entrySet()) {
+				addToValueIndex(entry.getValue(), entry.getKey(), entity);
+			}
+		}
+	}
+
+	// Adds the dependency matches read from a code file to the symbol index. It can be called by many threads at the same time
+	public void addDependencyMatches(AnalysisEntity entity, List<LineProcessResult> dependencyMatches) {
+		// We keep the dependency rules matches for the link
+		dependencyMatchStore.put(entity, dependencyMatches);
+
+		// Then, we remember which names the matches contain, so the Entity can be linked again when their Identifiers change
+		for (LineProcessResult dependencyMatch : dependencyMatches) {
+			if (dependencyMatch.languageRule().constantValue() != null) {
+				constantMatchingEntities.add(entity);
+				continue;
+			}
+
+			for (String name : dependencyMatch.match().split("\\s*,\\s*")) {
+				if ((name = name.trim()).isEmpty()) continue;
+				nameToMatchingEntities.computeIfAbsent(name, k -> ConcurrentHashMap.newKeySet()).add(entity);
+			}
+		}
+	}
+
+	// Removes the data of a code file from its Entity and from the symbol index, adding to entitiesToLink the Entities whose
+	// Dependencies could change because of it
+	public void removeFileData(AnalysisEntity entity, Set<AnalysisEntity> entitiesToLink) {
+		// We remove the Entity from the Variables indexes, while it still has its Variables
+		for (Map.Entry<String, Map<String, Set<AnalysisEntity>>> entry : variableToValueIndex.entrySet()) {
+			String value = RuleTemplate.getVariableValue(entry.getKey(), entity);
+			Set<AnalysisEntity> sameValueEntities = (value == null) ? null : entry.getValue().get(value);
+			if (sameValueEntities != null) sameValueEntities.remove(entity);
+		}
+
+		for (Identifier identifier : entity.getIdentifiers()) {
+			identifierToEntity.remove(identifier);
+
+			// Every Identifier has a different key, so we can remove it from the list of its name, and the list itself once empty
+			nameToIdentifiers.computeIfPresent(identifier.name(), (k, sameNameIdentifiers) -> {
+				sameNameIdentifiers.remove(identifier);
+				return sameNameIdentifiers.isEmpty() ? null : sameNameIdentifiers;
+			});
+
+			// The same is done for the list of its qualified name
+			if (identifier.qualifiedName() != null) {
+				qualifiedNameToIdentifiers.computeIfPresent(identifier.qualifiedName(), (k, sameQualifiedNameIdentifiers) -> {
+					sameQualifiedNameIdentifiers.remove(identifier);
+					return sameQualifiedNameIdentifiers.isEmpty() ? null : sameQualifiedNameIdentifiers;
+				});
+			}
+
+			// Entities that found the Identifier's name could have depended on it
+			addMatchingEntities(identifier, entitiesToLink);
+		}
+
+		// The Entities depending on this one must be linked again as well
+		for (FileDependency dependant : entity.getDependants()) {
+			entitiesToLink.add(dependant.getEntity());
+		}
+
+		// We remove the Entity from the names found by its matches
+		List<String> matches = dependencyMatchStore.remove(entity);
+		if (matches != null) {
+			for (String match : matches) {
+				for (String name : match.split("\\s*,\\s*")) {
+					Set<AnalysisEntity> matchingEntities = nameToMatchingEntities.get(name.trim());
+					if (matchingEntities != null) matchingEntities.remove(entity);
+				}
+			}
+		}
+		constantMatchingEntities.remove(entity);
+
+		// Finally, we clear the Entity's data
+		entity.clearVariables();
+		entity.clearIdentifiers();
+		entity.clearDependencies();
+	}
+
+	// Helper function to add to entitiesToLink the Entities whose dependency matches found the name or the qualified name of an Identifier
+	private void addMatchingEntities(Identifier identifier, Set<AnalysisEntity> entitiesToLink) {
+		entitiesToLink.addAll(nameToMatchingEntities.getOrDefault(identifier.name(), Set.of()));
+		if (identifier.qualifiedName() != null) entitiesToLink.addAll(nameToMatchingEntities.getOrDefault(identifier.qualifiedName(), Set.of()));
+	}
+
+	// Returns the Entities with Identifiers whose Variable, or global variable, has the given value
+	public Set<AnalysisEntity> getEntitiesWithVariable(String variableName, String value) {
+		Map<String, Set<AnalysisEntity>> valueToEntities = variableToValueIndex.computeIfAbsent(variableName, name -> {
+			Map<String, Set<AnalysisEntity>> index = new ConcurrentHashMap<>();
+			for (AnalysisEntity entity : new HashSet<>(identifierToEntity.values())) addToValueIndex(index, name, entity);
+			return index;
+		});
+		return valueToEntities.getOrDefault(value, Set.of());
+	}
+
+	// Helper function to add an Entity to the index of a Variable. Entities without the Variable aren't indexed
+	private static void addToValueIndex(Map<String, Set<AnalysisEntity>> index, String variableName, AnalysisEntity entity) {
+		String value = RuleTemplate.getVariableValue(variableName, entity);
+		if (value != null) index.computeIfAbsent(value, k -> ConcurrentHashMap.newKeySet()).add(entity);
+	}
+
+	// --------------------- Tree functions ---------------------
+
+	// Returns the node of a path inside the analysis tree, or null if it isn't part of it
+	public TreeItem<AnalysisEntity> getNode(Path path) {
+		return pathToNode.get(path);
+	}
+
+	public boolean hasNode(Path path) {
+		return pathToNode.containsKey(path);
+	}
+
+	public void putNode(Path path, TreeItem<AnalysisEntity> node) {
+		pathToNode.put(path, node);
+	}
+
+	public void removeNode(Path path) {
+		pathToNode.remove(path);
+	}
+
+	// Returns the paths of the directories inside the analysis tree
+	public List<Path> getDirectories() {
+		List<Path> directories = new ArrayList<>();
+		for (Map.Entry<Path, TreeItem<AnalysisEntity>> entry : pathToNode.entrySet()) {
+			if (entry.getValue().getValue().isDirectory()) directories.add(entry.getKey());
+		}
+		return directories;
+	}
+}
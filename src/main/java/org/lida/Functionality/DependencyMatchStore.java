@@ -0,0 +1,172 @@
+package org.lida.Functionality;
+
+import org.lida.Entity.AnalysisEntity;
+import org.lida.Languages.LanguageRule;
+import org.lida.Languages.LineProcessResult;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+// Class keeping the dependency rules matches of the code files between the scan and the link, and after it for the updates of the watch mode.
+// The stripped lines of the matches of each file are kept as a single compressed block, while the found strings stay uncompressed because
+// the symbol index uses them. The matches of the most recently used files are also kept decompressed, within a memory budget
+public class DependencyMatchStore {
+
+	// Maximum number of bytes of the decompressed lines kept. Beyond it, the least recently used files are decompressed again when needed
+	private static final long MAX_DECOMPRESSED_BYTES = 16L * 1024 * 1024;
+
+	// Record storing the matches of a file with their lines compressed
+	private record StoredMatches(byte[] compressedLines, int linesLength, int[] matchToLine, String[] matches, LanguageRule[] rules) {
+		/*
+		The data inside the record are:
+			distinct lines of the matches, joined by new lines and compressed,
+			number of bytes of the lines before the compression,
+			position of the line of each match among the distinct lines,
+			string caught by each match,
+			rule of each match
+		 */
+	}
+
+	// Record storing the decompressed matches of a file
+	private record DecompressedMatches(List<LineProcessResult> dependencyMatches, int linesLength) {
+		/*
+		The data inside the record are:
+			matches of the file in the order they have been found,
+			number of bytes of their distinct lines, counted inside the budget
+		 */
+	}
+
+	// Mapping of every code Entity to its stored matches
+	private final Map<AnalysisEntity, StoredMatches> entityToMatches = new ConcurrentHashMap<>();
+
+	// Decompressed matches of the most recently used Entities, in access order to discard the least recently used one, and the bytes of their lines
+	private final LinkedHashMap<AnalysisEntity, DecompressedMatches> entityToDecompressedMatches = new LinkedHashMap<>(16, 0.75f, true);
+	private long decompressedBytes = 0;
+
+	// --------------------- Public functions ---------------------
+
+	// Stores the matches of a code Entity, replacing the previous ones. It can be called by many threads at the same time
+	public void put(AnalysisEntity entity, List<LineProcessResult> dependencyMatches) {
+		int size = dependencyMatches.size();
+		int[] matchToLine = new int[size];
+		String[] matches = new String[size];
+		LanguageRule[] rules = new LanguageRule[size];
+
+		// The matches are in the order of their lines, so the matches of the same line are next to each other and their line is written once
+		StringBuilder lines = new StringBuilder();
+		String previousLine = null;
+		int linesCount = 0;
+		for (int i = 0; i < size; i++) {
+			LineProcessResult dependencyMatch = dependencyMatches.get(i);
+			if (!dependencyMatch.line().equals(previousLine)) {
+				if (linesCount > 0) lines.append('\n');
+				lines.append(dependencyMatch.line());
+				previousLine = dependencyMatch.line();
+				linesCount++;
+			}
+			matchToLine[i] = linesCount - 1;
+			matches[i] = dependencyMatch.match();
+			rules[i] = dependencyMatch.languageRule();
+		}
+
+		byte[] linesBytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+		entityToMatches.put(entity, new StoredMatches(compress(linesBytes), linesBytes.length, matchToLine, matches, rules));
+		forget(entity);
+	}
+
+	// Returns the matches of a code Entity, decompressing their lines if they aren't already decompressed
+	public List<LineProcessResult> get(AnalysisEntity entity) {
+		synchronized (entityToDecompressedMatches) {
+			DecompressedMatches decompressedMatches = entityToDecompressedMatches.get(entity);
+			if (decompressedMatches != null) return decompressedMatches.dependencyMatches();
+		}
+
+		StoredMatches storedMatches = entityToMatches.get(entity);
+		if (storedMatches == null) return List.of();
+
+		// Lines are read by the code reader without their line terminators, so they can be split on the new lines
+		String[] lines = new String(decompress(storedMatches.compressedLines(), storedMatches.linesLength()), StandardCharsets.UTF_8).split("\n", -1);
+		List<LineProcessResult> dependencyMatches = new ArrayList<>(storedMatches.matches().length);
+		for (int i = 0; i < storedMatches.matches().length; i++) {
+			dependencyMatches.add(new LineProcessResult(lines[storedMatches.matchToLine()[i]], storedMatches.matches()[i], storedMatches.rules()[i]));
+		}
+		dependencyMatches = Collections.unmodifiableList(dependencyMatches);
+
+		// The decompressed matches are kept if they fit inside the budget, discarding the least recently used ones to make room for them
+		synchronized (entityToDecompressedMatches) {
+			if (storedMatches.linesLength() <= MAX_DECOMPRESSED_BYTES && entityToMatches.get(entity) == storedMatches && !entityToDecompressedMatches.containsKey(entity)) {
+				entityToDecompressedMatches.put(entity, new DecompressedMatches(dependencyMatches, storedMatches.linesLength()));
+				decompressedBytes += storedMatches.linesLength();
+
+				Iterator<Map.Entry<AnalysisEntity, DecompressedMatches>> iterator = entityToDecompressedMatches.entrySet().iterator();
+				while (decompressedBytes > MAX_DECOMPRESSED_BYTES && iterator.hasNext()) {
+					Map.Entry<AnalysisEntity, DecompressedMatches> eldest = iterator.next();
+					if (eldest.getKey() == entity) continue;
+					decompressedBytes -= eldest.getValue().linesLength();
+					iterator.remove();
+				}
+			}
+		}
+
+		return dependencyMatches;
+	}
+
+	// Removes the matches of a code Entity, returning the strings they caught, or null if the Entity had no stored matches
+	public List<String> remove(AnalysisEntity entity) {
+		forget(entity);
+		StoredMatches storedMatches = entityToMatches.remove(entity);
+		return (storedMatches == null) ? null : Arrays.asList(storedMatches.matches());
+	}
+
+	// --------------------- Helper functions ---------------------
+
+	// Helper function to discard the decompressed matches of an Entity, once its stored matches change
+	private void forget(AnalysisEntity entity) {
+		synchronized (entityToDecompressedMatches) {
+			DecompressedMatches decompressedMatches = entityToDecompressedMatches.remove(entity);
+			if (decompressedMatches != null) decompressedBytes -= decompressedMatches.linesLength();
+		}
+	}
+
+	// Helper function to compress the bytes of the lines. The fastest level is used, as most of the gain comes from the repeated code
+	private static byte[] compress(byte[] bytes) {
+		if (bytes.length == 0) return bytes;
+
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(bytes);
+			deflater.finish();
+
+			ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 2 + 16);
+			byte[] buffer = new byte[8192];
+			while (!deflater.finished()) output.write(buffer, 0, deflater.deflate(buffer));
+			return output.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	// Helper function to decompress the bytes of the lines, whose original length is known
+	private static byte[] decompress(byte[] bytes, int length) {
+		if (length == 0) return bytes;
+
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(bytes);
+			byte[] result = new byte[length];
+			int position = 0;
+			while (position < length && !inflater.finished()) position += inflater.inflate(result, position, length - position);
+			return result;
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("Corrupted dependency matches", e);
+		} finally {
+			inflater.end();
+		}
+	}
+}
@@ -2,16 +2,28 @@ package org.lida.Functionality;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import javafx.application.Platform;
 import javafx.concurrent.Task;
 import javafx.scene.control.TreeItem;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 import org.lida.Entity.AnalysisEntity;
+import org.lida.Entity.FileDependency;
 import org.lida.Entity.Identifier;
 import org.lida.Languages.CodeReader;
+import org.lida.Languages.LineProcessResult;
+import org.lida.Languages.RuleProfiler;
+import org.lida.Languages.SourceFile;
+import org.lida.Settings.SettingsHandler;
 
 
 // Class responsible for the handling of the directory subtree analysis
@@ -19,19 +31,30 @@ public class DirectoryAnalyzer {
 
 	// --------------------- Tree Management ---------------------
 
-	// VirtualThreadPerTaskExecutor for the analysis. Stored to stop it in case of analysis cancellation
+	// VirtualThreadPerTaskExecutor for the analysis tasks and the I/O-only work. Stored to stop it in case of analysis cancellation
 	private ExecutorService analysisExecutor = null;
 
-	// The root of the AnalysisEntity tree, corresponding to the selected directory
-	private static TreeItem<AnalysisEntity> analysisTreeRoot = null;
+	// Work-stealing pool sized on the analysis parallelism setting, running the CPU-heavy rules processing. Stored to stop it in case of analysis cancellation
+	private ForkJoinPool rulesPool = null;
+
+	// Context of the current analysis, containing its tree and symbol index. Each analysis creates its own, so the tasks of a cleared analysis can't change the new one
+	private volatile AnalysisContext context = null;
 
 	// Public getter function for the root of the AnalysisEntity tree, corresponding to the selected directory
 	public TreeItem<AnalysisEntity> getAnalysisTreeRoot() {
-		return analysisTreeRoot;
+		AnalysisContext currentContext = context;
+		return (currentContext == null) ? null : currentContext.getTreeRoot();
+	}
+
+	// Public getter function for the rules profile of the current analysis. It's null if the analysis hasn't been profiled
+	public RuleProfiler getRuleProfiler() {
+		AnalysisContext currentContext = context;
+		return (currentContext == null) ? null : currentContext.getRuleProfiler();
 	}
 
 	// Public function to return the root AnalysisEntity, corresponding to the selected directory's Entity
 	public AnalysisEntity getRootEntity() {
+		TreeItem<AnalysisEntity> analysisTreeRoot = getAnalysisTreeRoot();
 		if (analysisTreeRoot == null) return null;
 		return analysisTreeRoot.getValue();
 	}
@@ -80,19 +103,43 @@ public class DirectoryAnalyzer {
 	// --------------------- Data structures ---------------------
 
 	// List of extensions from programming languages. Used for fast compiling Entity isCode flag
-	private static final ArrayList<String> codeExtensions = new ArrayList<>();
+	private final ArrayList<String> codeExtensions = new ArrayList<>();
 
 	// Mapping of every extension to its file type. Used for fast compiling Entity file type value
-	private static final Map<String, String> extensionToFileType = new HashMap<>();
+	private final Map<String, String> extensionToFileType = new HashMap<>();
 
 	// Mapping of every extension to its file type. Used for fast compiling Entity color value
 	private final Map<String, String> extensionToColor = new HashMap<>();
 
-	// Mapping of every Identifier to its AnalysisEntity. Used by CodeReader to get an Identifier's Entity after finding it in a code file
-	public static final Map<Identifier, AnalysisEntity> identifierToEntity = new ConcurrentHashMap<>();
+	// Record storing the data read from a code file, that are then added to the analysis context
+	private record FileData(List<Identifier> identifiers, List<LineProcessResult> dependencyMatches) {
+		/*
+		The data inside the record are:
+			Identifiers found in the file, before their keys are assigned,
+			dependency rules matches found in the file, in the order they have been found
+		 */
+	}
+
+	// --------------------- Analysis cache ---------------------
+
+	// Directory containing the cache files of the analyzed directories
+	private File cacheDirectory;
+
+	// Hash of the file types file, used to discard the caches written with other file types
+	private String fileTypesHash;
 
-	// Mapping of every Identifier name to its Identifier. Used by CodeReader to get an Identifier by its name when searching for dependencies
-	public static final Map<String, List<Identifier>> nameToIdentifiers = new ConcurrentHashMap<>();
+	// --------------------- Watch mode ---------------------
+
+	// Watcher of the analyzed directory. It's null if the directory isn't being watched
+	private DirectoryWatcher directoryWatcher = null;
+
+	// Function receiving the Entities changed by an update of the analysis. It's called on the JavaFX application thread
+	private Consumer<Set<AnalysisEntity>> onEntitiesChanged = null;
+
+	// Public setter for the function receiving the Entities changed when the watched directory changes
+	public void setOnEntitiesChanged(Consumer<Set<AnalysisEntity>> onEntitiesChanged) {
+		this.onEntitiesChanged = onEntitiesChanged;
+	}
 
 	// --------------------- Analysis log ---------------------
 
@@ -132,6 +179,10 @@ public class DirectoryAnalyzer {
 		File langsFile;
 		try {
 			langsFile = new File(Objects.requireNonNull(getClass().getResource("file_types.json")).toURI());
+
+			// The analysis caches are stored next to it, and are valid only for its current content
+			cacheDirectory = new File(langsFile.getParentFile(), "analysis_cache");
+			fileTypesHash = AnalysisCache.hash(Files.readAllBytes(langsFile.toPath()));
 		} catch (Exception e) {
 
 			// The langs file is requested by the program to function, so if there's a problem with it, we throw an exception
@@ -177,25 +228,88 @@ public class DirectoryAnalyzer {
 
 	// --------------------- Helper functions ---------------------
 
-	// Helper function to count the number of lines inside a file
-	private static int countLinesInFile(File file) {
+	// Size of the buffer used to count the lines of a file
+	private static final int LINE_COUNT_BUFFER_SIZE = 64 * 1024;
+
+	// Direct buffer reused by each thread for every line count, so that no memory is allocated per file
+	private static final ThreadLocal<ByteBuffer> lineCountBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(LINE_COUNT_BUFFER_SIZE));
 
-		// With a scanner, we iterate for each line of the file
+	// Masks used to search for line terminators eight bytes at a time
+	private static final long LOW_BITS = 0x0101010101010101L;
+	private static final long HIGH_BITS = 0x8080808080808080L;
+	private static final long LF_BYTES = LOW_BITS * '\n';
+	private static final long CR_BYTES = LOW_BITS * '\r';
+
+	// Helper function to check if any of the eight bytes inside the word is equal to the bytes of the mask
+	private static boolean hasByte(long word, long mask) {
+		long value = word ^ mask;
+		return ((value - LOW_BITS) & ~value & HIGH_BITS) != 0;
+	}
+
+	// Helper function to count the number of lines inside a file. It works on the raw bytes, without decoding any character:
+	// "\n", "\r" and "\r\n" all end a line, and a last line without terminator is counted as well
+	private static int countLinesInFile(Path file) {
 		int lines = 0;
-		try (Scanner scanner = new Scanner(file)) {
-			while (scanner.hasNextLine()) {
-				scanner.nextLine();
-				lines++;
+
+		// We keep track of the last read byte, because a "\r\n" terminator can be split between two reads
+		boolean afterCarriageReturn = false;
+		boolean endsWithTerminator = true;
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = lineCountBuffer.get();
+
+			while (true) {
+				buffer.clear();
+				int read = channel.read(buffer);
+				if (read == -1) break;
+				if (read == 0) continue;
+
+				int pos = 0;
+				while (pos < read) {
+
+					// We skip whole words that contain no line terminators
+					if (pos + Long.BYTES <= read) {
+						long word = buffer.getLong(pos);
+						if (!hasByte(word, LF_BYTES) && !hasByte(word, CR_BYTES)) {
+							afterCarriageReturn = false;
+							pos += Long.BYTES;
+							continue;
+						}
+					}
+
+					// Otherwise, we check the bytes one by one until the end of the word
+					int wordEnd = Math.min(pos + Long.BYTES, read);
+					for (; pos < wordEnd; pos++) {
+						byte b = buffer.get(pos);
+						if (b == '\n') {
+
+							// A "\n" after a "\r" ends the same line, which has already been counted
+							if (!afterCarriageReturn) lines++;
+							afterCarriageReturn = false;
+						} else if (b == '\r') {
+							lines++;
+							afterCarriageReturn = true;
+						} else {
+							afterCarriageReturn = false;
+						}
+					}
+				}
+
+				// We remember if the data read so far ends with a line terminator
+				byte last = buffer.get(read - 1);
+				endsWithTerminator = last == '\n' || last == '\r';
 			}
 		} catch (Exception _) {
 		}
 
+		// A last line without terminator must still be counted
+		if (!endsWithTerminator) lines++;
+
 		return lines;
 	}
 
-	// Helper function to get the extension of the file
-	private static String getFileExtension(File file) {
-		String name = file.getName();
+	// Helper function to get the extension of the file from its name
+	private static String getFileExtension(String name) {
 
 		// We find the position of the last dot
 		int dotIndex = name.lastIndexOf('.');
@@ -209,31 +323,64 @@ public class DirectoryAnalyzer {
 	// Clears the current analysis
 	public void clear() {
 
-		// If the analysisExecutor is running, we stop it
+		// If the analysisExecutor, the rulesPool or the directory watcher are running, we stop them
+		setWatching(false);
 		if (analysisExecutor != null && !analysisExecutor.isShutdown()) analysisExecutor.shutdownNow();
+		if (rulesPool != null && !rulesPool.isShutdown()) rulesPool.shutdownNow();
 
-		// We also clear data that changes between different analysis tasks
-		identifierToEntity.clear();
-		nameToIdentifiers.clear();
-		analysisTreeRoot = null;
+		// The data of the analysis are inside its context, so we just drop it
+		context = null;
+	}
+
+	// Starts or stops watching the analyzed directory, to update the analysis when its files change.
+	// The watching starts only once the analysis has been completed
+	public void setWatching(boolean watching) {
+		if (!watching) {
+			if (directoryWatcher != null) directoryWatcher.stop();
+			directoryWatcher = null;
+			return;
+		}
+
+		// The updates use the executors of the watched analysis, which are replaced together with its context
+		AnalysisContext currentContext = context;
+		ExecutorService executor = analysisExecutor;
+		ForkJoinPool pool = rulesPool;
+		if (directoryWatcher != null || currentContext == null || !currentContext.isCompleted()) return;
+		directoryWatcher = new DirectoryWatcher(currentContext::getDirectories, changes -> updateAnalysis(currentContext, executor, pool, changes));
+		directoryWatcher.start();
 	}
 
 	// Starts a new analysis, cancelling any running ones
 	public Task<Void> startAnalysis(File directory) {
 		// Clears the state for a new analysis
 		clear();
-		analysisExecutor = Executors.newVirtualThreadPerTaskExecutor();
+		ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
 
-		// We prepare to store the code Entities to then link only them
-		List<AnalysisEntity> codeEntities = new ArrayList<>();
+		// The rules pool uses the parallelism setting, or one thread for each core if it's not set
+		int parallelism = SettingsHandler.getAnalysisParallelism();
+		ForkJoinPool pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+
+		// The executors are stored to stop them, but the tasks of this analysis only use their own ones,
+		// so that a cleared analysis still running can't use the executors of the next one
+		analysisExecutor = executor;
+		rulesPool = pool;
+
+		// The new analysis gets its own context, which its tasks use instead of the current one.
+		// It also gets its own rules profile if enabled, so the tasks of a cleared analysis can't add to the profile of the new one
+		AnalysisContext analysisContext = new AnalysisContext(directory.toPath().toAbsolutePath());
+		if (SettingsHandler.getProfileRules()) analysisContext.setRuleProfiler(new RuleProfiler());
+		context = analysisContext;
 
 		// Task to scan the directory subtree
 		Task<Void> scanTask = new Task<>() {
 			@Override
 			protected Void call() {
 				try {
+					// We load the cached results of the directory, if enabled
+					if (SettingsHandler.getUseAnalysisCache()) analysisContext.setAnalysisCache(AnalysisCache.load(cacheDirectory, analysisContext.getRoot(), fileTypesHash));
+
 					// Start scanning and build the analysis tree.
-					analysisTreeRoot = scan(directory, codeEntities, analysisExecutor);
+					analysisContext.setTreeRoot(scan(analysisContext, executor, pool));
 				} catch (Exception e) {
 					System.err.println("Cancelling scan task! " + e.getMessage());
 					cancel();
@@ -247,7 +394,12 @@ public class DirectoryAnalyzer {
 			@Override
 			protected Void call() {
 				try {
-					link(codeEntities, analysisExecutor);
+					// We link only the code Entities found by the scan
+					link(analysisContext, analysisContext.getCodeEntities(), pool);
+
+					// The analysis is complete, so we can start watching its directory if enabled
+					analysisContext.setCompleted(true);
+					if (SettingsHandler.getWatchDirectory()) Platform.runLater(() -> setWatching(SettingsHandler.getWatchDirectory()));
 				} catch (Exception e) {
 					System.err.println("Cancelling link task! " + e.getMessage());
 					cancel();
@@ -257,8 +409,8 @@ public class DirectoryAnalyzer {
 		};
 
 		// When the scanning task succeeds, we start the linking task
-		scanTask.setOnSucceeded(_ -> analysisExecutor.submit(linkTask));
-		analysisExecutor.submit(scanTask);
+		scanTask.setOnSucceeded(_ -> executor.submit(linkTask));
+		executor.submit(scanTask);
 
 		// We return the link task to the LIDAController
 		return linkTask;
@@ -266,135 +418,602 @@ public class DirectoryAnalyzer {
 
 	// --------------------- Scan functions ---------------------
 
-	// Recursive function that scans the file subtree to create a corresponding AnalysisEntity tree
-	private TreeItem<AnalysisEntity> scan(File file, List<AnalysisEntity> codeEntities, ExecutorService executor) throws InterruptedException, ExecutionException {
-		// Check if the executor has been shut to cancel the analysis
-		if (executor.isShutdown()) {
-			throw new InterruptedException("Interrupted analysis");
+	// Function that walks the file subtree to create a corresponding AnalysisEntity tree. The walk only lists directories and reads
+	// the file attributes once per entry, while the files reading is submitted to the executors.
+	// Excluded files and directories are pruned before being read or descended
+	private TreeItem<AnalysisEntity> scan(AnalysisContext context, ExecutorService executor, ForkJoinPool pool) throws IOException, InterruptedException, ExecutionException {
+		// We prepare the exclusions from the user settings
+		Path directory = context.getRoot();
+		ScanExclusions exclusions = new ScanExclusions(directory, SettingsHandler.getExcludedPatterns(), SettingsHandler.getUseGitignore(), SettingsHandler.getMaxFileSize());
+		int maxDepth = SettingsHandler.getMaxScanDepth();
+
+		// Nodes of the directories currently being visited. The last one is the parent of the visited entries
+		Deque<TreeItem<AnalysisEntity>> directoryNodes = new ArrayDeque<>();
+		List<TreeItem<AnalysisEntity>> rootNode = new ArrayList<>(1);
+
+		// Futures of the submitted file readings, to wait for all of them at the end of the walk
+		List<Future<?>> futures = new ArrayList<>();
+
+		// Code Entities in the order of the walk, with the futures of their readings returning their Identifiers.
+		// Only the walk adds to them, as the readings running on the pools never change them
+		List<AnalysisEntity> codeEntities = new ArrayList<>();
+		List<Future<List<Identifier>>> identifiersFutures = new ArrayList<>();
+
+		Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), (maxDepth > 0) ? maxDepth : Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+				// Check if the rules pool has been shut to cancel the analysis
+				if (pool.isShutdown()) return FileVisitResult.TERMINATE;
+
+				// Excluded directories are skipped with their whole subtree, otherwise we load their exclusion rules
+				if (exclusions.excludesDirectory(dir)) return FileVisitResult.SKIP_SUBTREE;
+				exclusions.enterDirectory(dir);
+
+				// We create the directory Entity and its tree node, adding it to its parent or as the root
+				TreeItem<AnalysisEntity> analysisNode = new TreeItem<>(createEntity(dir, true));
+				context.putNode(dir, analysisNode);
+				if (directoryNodes.isEmpty()) {
+					rootNode.add(analysisNode);
+				} else {
+					directoryNodes.getLast().getChildren().add(analysisNode);
+				}
+
+				// Its children will be visited next
+				directoryNodes.addLast(analysisNode);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+				if (pool.isShutdown()) return FileVisitResult.TERMINATE;
+				if (exclusions.excludesFile(file, attributes)) return FileVisitResult.CONTINUE;
+
+				// We create the file Entity and add its tree node to the current directory
+				AnalysisEntity entity = createEntity(file, false);
+				entity.setStorageSize(attributes.size());
+				entity.setModifiedTime(attributes.lastModifiedTime().toMillis());
+				TreeItem<AnalysisEntity> analysisNode = new TreeItem<>(entity);
+				directoryNodes.getLast().getChildren().add(analysisNode);
+				context.putNode(file, analysisNode);
+
+				if (entity.isCode()) {
+					codeEntities.add(entity);
+
+					// If it's a code Entity, the reading and the rules processing are CPU-heavy, so they are done by the rules pool
+					Future<List<Identifier>> future = pool.submit(() -> {
+						addToLog("Reading " + entity.getName() + '.' + entity.getExtension());
+						return readFile(context, entity);
+					});
+					futures.add(future);
+					identifiersFutures.add(future);
+				} else {
+
+					// Otherwise, we only need its line count, which is I/O work for a virtual thread
+					futures.add(executor.submit(() -> countLines(context, entity, file)));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exception) {
+				// Files that can't be accessed are ignored
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exception) {
+				// We finished visiting the directory's children
+				directoryNodes.removeLast();
+				exclusions.exitDirectory();
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		// We wait for every file reading to finish
+		for (Future<?> future : futures) {
+			future.get();
+		}
+
+		// If the walk stopped because of a cancellation, the tree is incomplete
+		if (pool.isShutdown() || rootNode.isEmpty()) throw new InterruptedException("Interrupted analysis");
+
+		// The keys of the Identifiers with the same name depend on the order in which they are added to the symbol index,
+		// so their files are added in the order of their paths, making the keys the same on every analysis of the same tree
+		List<Integer> pathOrder = new ArrayList<>(codeEntities.size());
+		for (int i = 0; i < codeEntities.size(); i++) pathOrder.add(i);
+		pathOrder.sort(Comparator.comparing(i -> codeEntities.get(i).getPath()));
+
+		List<AnalysisEntity> sortedCodeEntities = new ArrayList<>(codeEntities.size());
+		for (int i : pathOrder) {
+			context.addIdentifiers(codeEntities.get(i), identifiersFutures.get(i).get());
+			sortedCodeEntities.add(codeEntities.get(i));
 		}
 
-		// We create an AnalysisEntity for the current file or directory with some common values for both
+		// The code Entities are handed to the link through the context in the same order, once all of them have been read
+		context.setCodeEntities(sortedCodeEntities);
+
+		return rootNode.getFirst();
+	}
+
+	// Helper function to create the AnalysisEntity of a file or directory, with the values that don't need its content
+	private AnalysisEntity createEntity(Path path, boolean isDirectory) {
+
+		// We set some common values for both files and directories
 		AnalysisEntity entity = new AnalysisEntity();
-		String name = file.getName();
+		Path fileName = path.getFileName();
+		String name = (fileName == null) ? path.toString() : fileName.toString();
 		entity.setName(name);
-		entity.setPath(file.getAbsolutePath());
+		entity.setPath(path.toAbsolutePath().toString());
+
+		// If the file is a directory, we set the curresponding flag
+		entity.setDirectory(isDirectory);
+		if (isDirectory) return entity;
+
+		// If the file is not a directory, then other properties must be compiled.
+		// We start with its extension, to then add the scanning entry to the analysis log
+		String extension = getFileExtension(name);
+		entity.setExtension(extension);
+		addToLog("Scanning " + name + '.' + extension);
+
+		// Then, we use the previously compiled maps to get the file type and color of the file
+		entity.setFileType(extensionToFileType.get(extension));
+		entity.setColor(extensionToColor.get(extension));
+
+		// The codeExtensions list is used to determine if this file contains a programming language
+		entity.setCode(codeExtensions.contains(extension));
+		return entity;
+	}
+
+	// Helper function that counts the lines of non-code files, unless the cached count is still valid
+	private void countLines(AnalysisContext context, AnalysisEntity entity, Path file) {
+		AnalysisCache analysisCache = context.getAnalysisCache();
+		AnalysisCache.CachedFile cachedFile = (analysisCache == null) ? null : analysisCache.get(entity, entity.getModifiedTime());
+		if (cachedFile != null) {
+			entity.setLineCount(cachedFile.lineCount());
+			return;
+		}
 
-		// We then create the entity's tree node
-		TreeItem<AnalysisEntity> analysisNode = new TreeItem<>(entity);
+		entity.setLineCount(countLinesInFile(file));
+		if (analysisCache != null) analysisCache.put(entity, entity.getModifiedTime());
+	}
+
+	// Helper function that reads code files to compile their line count, Variables, Identifiers and dependency matches.
+	// The dependency matches are added to the context right away, while the Identifiers are returned to be added in the order of the paths
+	private List<Identifier> readFile(AnalysisContext context, AnalysisEntity entity) {
+		FileData fileData = readFileData(context, entity);
+		context.addDependencyMatches(entity, fileData.dependencyMatches());
+		return fileData.identifiers();
+	}
+
+	// Helper function that reads a code file, filling its line count and Variables and returning its Identifiers and dependency matches.
+	// If the file didn't change since the last analysis of the directory, its cached results are used instead
+	private FileData readFileData(AnalysisContext context, AnalysisEntity entity) {
+		long modifiedTime = entity.getModifiedTime();
+		AnalysisCache analysisCache = context.getAnalysisCache();
+
+		// We first try to use the cached results
+		AnalysisCache.CachedFile cachedFile = (analysisCache == null) ? null : analysisCache.get(entity, modifiedTime);
+		List<LineProcessResult> cachedMatches = (cachedFile == null) ? null : AnalysisCache.getDependencyMatches(entity, cachedFile);
+		if (cachedMatches != null) {
+			entity.setLineCount(cachedFile.lineCount());
+			cachedFile.variables().forEach(entity::addVariable);
+			return new FileData(cachedFile.identifiers(), cachedMatches);
+		}
+
+		// The file is read only once, and every rule is then applied on its code lines
+		SourceFile sourceFile = CodeReader.readSourceFile(entity);
+		entity.setLineCount(sourceFile.lineCount());
 
-		if (!file.isDirectory()) {
+		// First, we fill the entity's Variables, that will be used both in the Identifier reading and in the Dependency find
+		CodeReader.fillVariables(context, entity, sourceFile);
+
+		// We then read the Entity's Identifiers and its dependency rules matches, so the link won't need to read the file again
+		FileData fileData = new FileData(CodeReader.readIdentifiers(context, entity, sourceFile), CodeReader.readDependencyMatches(context, entity, sourceFile));
 
-			// If the file is not a directory, then other properties must be compiled:
-			entity.setDirectory(false);
+		if (analysisCache != null) analysisCache.put(entity, modifiedTime, fileData.identifiers(), fileData.dependencyMatches());
+		return fileData;
+	}
 
-			// We start with its extension, to then add the scanning entry to the analysis log
-			String extension = getFileExtension(file);
-			entity.setExtension(extension);
-			addToLog("Scanning " + name + '.' + extension);
+	// --------------------- Link functions ---------------------
 
-			// Then we can read from the file its line count and storage size
-			entity.setLineCount(countLinesInFile(file));
-			entity.setStorageSize(file.length());
+	// Link function that iterates on all code Entities to create Dependencies between them.
+	// The link tasks only find the Dependencies of their Entity, without changing any Entity, as many of them can depend on the same Entity.
+	// Their results are then merged in a single pass, where each Entity is changed only by the task merging it
+	private void link(AnalysisContext context, List<AnalysisEntity> codeEntities, ForkJoinPool pool) throws ExecutionException, InterruptedException {
+		List<Future<List<FileDependency>>> futures = new ArrayList<>();
 
-			// Finally, we use the previously compiled maps to get the file type and color of the file
-			entity.setFileType(extensionToFileType.get(extension));
-			entity.setColor(extensionToColor.get(extension));
+		// For each code Entity we submit a find Dependencies task to the rules pool
+		for (AnalysisEntity entity : codeEntities) {
+			futures.add(pool.submit(() -> findEntityDependencies(context, entity)));
+		}
 
-			// The codeExtensions list is used to determine if this file contains a programming language
-			boolean isCode = codeExtensions.contains(extension);
-			entity.setCode(isCode);
-			if (isCode) {
-				codeEntities.add(entity);
+		// We wait for all linking tasks to finish, grouping the found Dependencies by the Entity they depend on.
+		// The Entities are visited in their order, so the dependants of each Entity don't depend on the order in which the tasks finished
+		List<List<FileDependency>> entitiesDependencies = new ArrayList<>(codeEntities.size());
+		Map<AnalysisEntity, List<FileDependency>> entityToDependants = new HashMap<>();
+		for (int i = 0; i < codeEntities.size(); i++) {
+			List<FileDependency> dependencies = futures.get(i).get();
+			entitiesDependencies.add(dependencies);
 
-				// If it's a code Entity, we read it to compile its Variables and Identifiers
-				addToLog("Reading " + name + '.' + extension);
-				readFile(entity);
+			for (FileDependency dependency : dependencies) {
+				entityToDependants.computeIfAbsent(dependency.getEntity(), _ -> new ArrayList<>()).add(new FileDependency(codeEntities.get(i), dependency));
 			}
-		} else {
-			// If the file is a directory, we set the curresponding flag
-			entity.setDirectory(true);
+		}
 
-			// We then process its children recursively
-			File[] fileChildren = file.listFiles();
-			if (fileChildren != null) {
-				List<Future<TreeItem<AnalysisEntity>>> futures = new ArrayList<>();
+		// We then merge the Dependencies and the dependants of each code Entity in parallel, as only code Entities can be depended on
+		List<Future<?>> mergeFutures = new ArrayList<>();
+		for (int i = 0; i < codeEntities.size(); i++) {
+			AnalysisEntity entity = codeEntities.get(i);
+			List<FileDependency> dependencies = entitiesDependencies.get(i);
+			List<FileDependency> dependants = entityToDependants.getOrDefault(entity, List.of());
+			if (dependencies.isEmpty() && dependants.isEmpty()) continue;
+
+			mergeFutures.add(pool.submit(() -> {
+				entity.addLinkedDependencies(dependencies);
+				entity.addDependants(dependants);
+			}));
+		}
+		for (Future<?> future : mergeFutures) {
+			future.get();
+		}
 
-				// We submit to the executor the recursive call for each child
-				for (File childFile : fileChildren) {
-					futures.add(executor.submit(() -> scan(childFile, codeEntities, executor)));
-				}
+		// The analysis is complete, so we store its results for the next one. The cache isn't used by the updates of the watch mode
+		AnalysisCache analysisCache = context.getAnalysisCache();
+		if (analysisCache != null) analysisCache.save();
+		context.setAnalysisCache(null);
 
-				// After waiting for each child scan, we add it to the current node's children
-				for (Future<TreeItem<AnalysisEntity>> future : futures) {
-					analysisNode.getChildren().add(future.get());
-				}
+		// The executors and the context are kept until the analysis is cleared,
+		// so that the watch mode can update the analysis without reading the unchanged files again
+	}
+
+	// Helper function to find the Dependencies of a single Entity, without adding them
+	private List<FileDependency> findEntityDependencies(AnalysisContext context, AnalysisEntity entity) {
+
+		// We add the linking entry to the analysis log and find the Dependencies of the Entity
+		addToLog("Linking " + entity.getName() + '.' + entity.getExtension());
+		return CodeReader.findDependencies(context, entity, entity.getFileType(), context.getDependencyMatches(entity));
+	}
+
+	// --------------------- Watch functions ---------------------
+
+	// Record storing an entry read by an update of the analysis, before it's applied to the analysis tree
+	private record UpdatedEntry(Path path, AnalysisEntity entity, AnalysisEntity readEntity, FileData fileData) {
+		/*
+		The data inside the record are:
+			path of the entry,
+			Entity of the entry, already inside the analysis tree if the entry was modified,
+			Entity on which the entry has been read, which is a copy of the Entity if the entry was modified,
+			data read from the entry if it's a code file, null otherwise
+		 */
+	}
+
+	// Record storing the Entities affected by the changes applied to the analysis tree
+	private record AppliedChanges(Set<AnalysisEntity> changedEntities, List<AnalysisEntity> entitiesToLink) {
+		/*
+		The data inside the record are:
+			Entities changed by the update, including the ones linked again,
+			Entities that must be linked again, as their Dependencies could have changed
+		 */
+	}
+
+	// Function called by the directory watcher with the changed paths. The changed files are read on the analysis executors,
+	// and then their results are applied on the JavaFX application thread. Only the Entities that could be affected are linked again,
+	// on the rules pool so the interface isn't blocked, and their new Dependencies are then set on the application thread
+	private void updateAnalysis(AnalysisContext context, ExecutorService executor, ForkJoinPool pool, Set<Path> changes) {
+		try {
+			updateAnalysis(context, executor, pool, changes, context.getTreeRoot());
+		} catch (Exception e) {
+			System.err.println("Error while updating the analysis: " + e.getMessage());
+		}
+	}
+
+	// Helper function that updates the analysis of the given context and root with the changed paths
+	private void updateAnalysis(AnalysisContext context, ExecutorService executor, ForkJoinPool pool, Set<Path> changes, TreeItem<AnalysisEntity> root) throws IOException, ExecutionException, InterruptedException {
+		if (root == null) return;
+
+		// We first compare the changed paths with the analysis tree
+		Set<TreeItem<AnalysisEntity>> removedNodes = new LinkedHashSet<>();
+		Map<Path, BasicFileAttributes> addedEntries = new TreeMap<>();
+		Map<Path, BasicFileAttributes> modifiedEntries = new LinkedHashMap<>();
+		for (Path path : changes) {
+			findChanges(context, path.toAbsolutePath(), removedNodes, addedEntries, modifiedEntries);
+		}
+		if (removedNodes.isEmpty() && addedEntries.isEmpty() && modifiedEntries.isEmpty()) return;
+
+		// Then, we read the added and modified files, using the same executors of the analysis
+		List<UpdatedEntry> addedEntities = Collections.synchronizedList(new ArrayList<>());
+		List<UpdatedEntry> modifiedEntities = Collections.synchronizedList(new ArrayList<>());
+		List<Future<?>> futures = new ArrayList<>();
+
+		for (Map.Entry<Path, BasicFileAttributes> entry : addedEntries.entrySet()) {
+			AnalysisEntity entity = createEntity(entry.getKey(), entry.getValue().isDirectory());
+			futures.add(readEntry(context, executor, pool, entry.getKey(), entry.getValue(), entity, entity, addedEntities));
+		}
+		for (Map.Entry<Path, BasicFileAttributes> entry : modifiedEntries.entrySet()) {
+			AnalysisEntity entity = context.getNode(entry.getKey()).getValue();
+			futures.add(readEntry(context, executor, pool, entry.getKey(), entry.getValue(), entity, createEntity(entry.getKey(), false), modifiedEntities));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+
+		// The added entries are sorted by path, so that directories are added before their content
+		addedEntities.sort(Comparator.comparing(UpdatedEntry::path));
+
+		// The analysis tree and the symbol index are updated on the application thread, as they are used by the interface.
+		// If the analysis has been cleared in the meantime, the results are discarded
+		AppliedChanges appliedChanges = runOnApplicationThread(() -> (this.context == context && context.getTreeRoot() == root) ? applyChanges(context, removedNodes, addedEntities, modifiedEntities) : null);
+		if (appliedChanges == null) return;
+
+		// The affected Entities are linked again on the rules pool, finding their new Dependencies without changing any Entity
+		List<AnalysisEntity> entitiesToLink = appliedChanges.entitiesToLink();
+		List<Future<List<FileDependency>>> linkFutures = new ArrayList<>();
+		for (AnalysisEntity entity : entitiesToLink) {
+			linkFutures.add(pool.submit(() -> findEntityDependencies(context, entity)));
+		}
+		List<List<FileDependency>> entitiesDependencies = new ArrayList<>(entitiesToLink.size());
+		for (Future<List<FileDependency>> future : linkFutures) {
+			entitiesDependencies.add(future.get());
+		}
+
+		// Finally, the old Dependencies are replaced by the new ones and the changed Entities are notified on the application thread
+		runOnApplicationThread(() -> {
+			if (this.context != context || context.getTreeRoot() != root) return null;
+
+			for (AnalysisEntity entity : entitiesToLink) {
+				entity.clearDependencies();
+			}
+			for (int i = 0; i < entitiesToLink.size(); i++) {
+				entitiesToLink.get(i).addDependencies(entitiesDependencies.get(i));
 			}
+
+			if (onEntitiesChanged != null) onEntitiesChanged.accept(appliedChanges.changedEntities());
+			return null;
+		});
+	}
+
+	// Helper function to run a function on the application thread, waiting for its result
+	private static <T> T runOnApplicationThread(Callable<T> function) throws ExecutionException, InterruptedException {
+		FutureTask<T> task = new FutureTask<>(function);
+		Platform.runLater(task);
+		return task.get();
+	}
+
+	// Helper function to compare a changed path with the analysis tree, collecting the removed nodes and the added and modified entries
+	private void findChanges(AnalysisContext context, Path path, Set<TreeItem<AnalysisEntity>> removedNodes, Map<Path, BasicFileAttributes> addedEntries, Map<Path, BasicFileAttributes> modifiedEntries) throws IOException {
+		TreeItem<AnalysisEntity> node = context.getNode(path);
+
+		// We read the attributes of the path. If this fails, it has been deleted
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (IOException _) {
+			if (node != null && node != context.getTreeRoot()) removedNodes.add(node);
+			return;
+		}
+
+		// If a file became a directory, or vice versa, its old node is removed
+		if (node != null && node.getValue().isDirectory() != attributes.isDirectory()) {
+			removedNodes.add(node);
+			node = null;
 		}
 
-		return analysisNode;
+		if (attributes.isDirectory()) {
+
+			// For directories, the whole subtree is compared, as its events could have been lost
+			if (node == null && isExcluded(context, path, attributes)) return;
+			compareSubtree(context, path, node, removedNodes, addedEntries, modifiedEntries);
+		} else if (node == null) {
+			if (!isExcluded(context, path, attributes)) addedEntries.put(path, attributes);
+		} else if (isModified(node.getValue(), attributes)) {
+			modifiedEntries.put(path, attributes);
+		}
 	}
 
-	// Helper function that reads code files to compile their Variables and Identifiers
-	private static void readFile(AnalysisEntity entity) {
-		// First, we fill the entity's Variables, that will be used both in the Identifier reading and in the Dependency find
-		CodeReader.fillVariables(entity);
+	// Helper function to walk a directory subtree, comparing its entries with the nodes inside the analysis tree
+	private void compareSubtree(AnalysisContext context, Path directory, TreeItem<AnalysisEntity> node, Set<TreeItem<AnalysisEntity>> removedNodes, Map<Path, BasicFileAttributes> addedEntries, Map<Path, BasicFileAttributes> modifiedEntries) throws IOException {
+		// The walk starts from the directory, so we load the exclusion rules of its parents
+		ScanExclusions exclusions = createExclusions(context);
+		exclusions.enterParents(directory);
 
-		// We read the Entity's Identifiers from its code, and we iterate on each of them
-		for (Identifier identifier : CodeReader.readIdentifiers(entity)) {
-			Identifier newIdentifier = identifier;
+		// The maximum depth of the analysis is counted from its root
+		int maxDepth = SettingsHandler.getMaxScanDepth();
+		int walkDepth = (maxDepth > 0) ? maxDepth - getDepth(context, directory) : Integer.MAX_VALUE;
+		if (walkDepth <= 0) return;
 
-			// We need to find the key value for the new Identifier:
-			final int maxKey = identifierToEntity.keySet().stream()
+		// We walk the subtree like the scan does, remembering the entries found
+		Set<Path> foundEntries = new HashSet<>();
+		Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), walkDepth, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+				if (exclusions.excludesDirectory(dir)) return FileVisitResult.SKIP_SUBTREE;
+				exclusions.enterDirectory(dir);
 
-					// We find Identifiers with the same name and different entity
-					.filter(analysisEntity -> analysisEntity.name().equals(identifier.name()))
+				foundEntries.add(dir);
+				if (!context.hasNode(dir)) addedEntries.put(dir, attributes);
+				return FileVisitResult.CONTINUE;
+			}
 
-					// We then get all the keys of the Identifiers with the same name
-					.map(Identifier::key)
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+				if (exclusions.excludesFile(file, attributes)) return FileVisitResult.CONTINUE;
+
+				foundEntries.add(file);
+				TreeItem<AnalysisEntity> fileNode = context.getNode(file);
+				if (fileNode == null) {
+					addedEntries.put(file, attributes);
+				} else if (isModified(fileNode.getValue(), attributes)) {
+					modifiedEntries.put(file, attributes);
+				}
+				return FileVisitResult.CONTINUE;
+			}
 
-					// Between those keys, we need to take the biggest one
-					.max(Integer::compare).orElse(0);
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exception) {
+				return FileVisitResult.CONTINUE;
+			}
 
-			// So, if the new key is not 0, that means that other Identifiers have the same name of the new Identifier,
-			// and so we must change it's key to be higher than any of them, thus making it different
-			if (maxKey != 0) {
-				newIdentifier = new Identifier(identifier.name(), identifier.ruleName(), maxKey + 1, identifier.hidden());
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exception) {
+				exclusions.exitDirectory();
+				return FileVisitResult.CONTINUE;
 			}
+		});
 
-			// We can finally add the new Identifier to its Entity and to the maps
-			entity.addIdentifier(newIdentifier);
-			identifierToEntity.put(newIdentifier, entity);
-			nameToIdentifiers.computeIfAbsent(newIdentifier.name(), k -> new ArrayList<>()).add(newIdentifier);
+		// The nodes of the subtree that weren't found anymore have been removed
+		if (node != null) findRemovedNodes(node, foundEntries, removedNodes);
+	}
+
+	// Helper recursive function to find the nodes of a subtree whose entries weren't found by a walk
+	private static void findRemovedNodes(TreeItem<AnalysisEntity> node, Set<Path> foundEntries, Set<TreeItem<AnalysisEntity>> removedNodes) {
+		if (!foundEntries.contains(Path.of(node.getValue().getPath()))) {
+			// The whole subtree of the node will be removed with it
+			removedNodes.add(node);
+			return;
+		}
+
+		for (TreeItem<AnalysisEntity> child : node.getChildren()) {
+			findRemovedNodes(child, foundEntries, removedNodes);
 		}
 	}
 
-	// --------------------- Link functions ---------------------
+	// Helper function to submit the reading of an added or modified entry to the executors
+	private Future<?> readEntry(AnalysisContext context, ExecutorService executor, ForkJoinPool pool, Path path, BasicFileAttributes attributes, AnalysisEntity entity, AnalysisEntity readEntity, List<UpdatedEntry> updatedEntries) {
+		if (!attributes.isDirectory()) {
+			readEntity.setStorageSize(attributes.size());
+			readEntity.setModifiedTime(attributes.lastModifiedTime().toMillis());
+		}
 
-	// Link function that iterates on all code Entities to create Dependencies between them
-	private void link(List<AnalysisEntity> codeEntities, ExecutorService executor) throws ExecutionException, InterruptedException {
-		List<Future<?>> futures = new ArrayList<>();
+		if (readEntity.isCode()) {
+			return pool.submit(() -> {
+				addToLog("Reading " + readEntity.getName() + '.' + readEntity.getExtension());
+				updatedEntries.add(new UpdatedEntry(path, entity, readEntity, readFileData(context, readEntity)));
+			});
+		}
 
-		// For each code Entity we submit a link Entity task
-		for (AnalysisEntity entity : codeEntities) {
-			futures.add(executor.submit(() -> linkEntity(entity)));
+		return executor.submit(() -> {
+			if (!readEntity.isDirectory()) readEntity.setLineCount(countLinesInFile(path));
+			updatedEntries.add(new UpdatedEntry(path, entity, readEntity, null));
+		});
+	}
+
+	// Helper function to apply the read changes to the analysis tree, returning the changed Entities and the ones whose Dependencies could have changed
+	private AppliedChanges applyChanges(AnalysisContext context, Set<TreeItem<AnalysisEntity>> removedNodes, List<UpdatedEntry> addedEntities, List<UpdatedEntry> modifiedEntities) {
+		Set<AnalysisEntity> changedEntities = new LinkedHashSet<>();
+		Set<AnalysisEntity> entitiesToLink = new LinkedHashSet<>();
+		Set<AnalysisEntity> removedEntities = new HashSet<>();
+
+		// Languages of the changed code files, whose constant rules must be applied again
+		Set<String> changedFileTypes = new HashSet<>();
+
+		// We start removing the deleted nodes with their subtree
+		for (TreeItem<AnalysisEntity> node : removedNodes) {
+			TreeItem<AnalysisEntity> parent = node.getParent();
+			if (parent == null || !parent.getChildren().remove(node)) continue;
+
+			removeNode(context, node, entitiesToLink, removedEntities, changedFileTypes);
+			changedEntities.add(parent.getValue());
 		}
 
-		// We wait for all linking tasks to finish
-		for (Future<?> future : futures) {
-			future.get();
+		// Then, we replace the data of the modified Entities with the newly read ones
+		for (UpdatedEntry modifiedEntry : modifiedEntities) {
+			AnalysisEntity entity = modifiedEntry.entity();
+			AnalysisEntity readEntity = modifiedEntry.readEntity();
+			if (!context.hasNode(modifiedEntry.path())) continue;
+
+			if (entity.isCode()) {
+				context.removeFileData(entity, entitiesToLink);
+				readEntity.getVariables().forEach(entity::addVariable);
+				context.addFileData(entity, modifiedEntry.fileData().identifiers(), modifiedEntry.fileData().dependencyMatches(), entitiesToLink);
+
+				entitiesToLink.add(entity);
+				changedFileTypes.add(entity.getFileType());
+			}
+
+			entity.setLineCount(readEntity.getLineCount());
+			entity.setStorageSize(readEntity.getStorageSize());
+			entity.setModifiedTime(readEntity.getModifiedTime());
+			changedEntities.add(entity);
+		}
+
+		// Then, we add the new Entities to the nodes of their directories
+		for (UpdatedEntry addedEntry : addedEntities) {
+			TreeItem<AnalysisEntity> parent = context.getNode(addedEntry.path().getParent());
+			if (parent == null || context.hasNode(addedEntry.path())) continue;
+
+			AnalysisEntity entity = addedEntry.entity();
+			TreeItem<AnalysisEntity> node = new TreeItem<>(entity);
+			parent.getChildren().add(node);
+			context.putNode(addedEntry.path(), node);
+
+			if (entity.isDirectory() && directoryWatcher != null) {
+				try {
+					directoryWatcher.watchDirectory(addedEntry.path());
+				} catch (IOException e) {
+					System.err.println("Unable to watch " + addedEntry.path() + ": " + e.getMessage());
+				}
+			}
+
+			if (entity.isCode()) {
+				context.addFileData(entity, addedEntry.fileData().identifiers(), addedEntry.fileData().dependencyMatches(), entitiesToLink);
+				entitiesToLink.add(entity);
+				changedFileTypes.add(entity.getFileType());
+			}
+			changedEntities.add(entity);
+		}
+
+		// Entities with constant dependency rules can depend on any Identifier of their language, so they are linked again too
+		for (AnalysisEntity entity : context.getConstantMatchingEntities()) {
+			if (changedFileTypes.contains(entity.getFileType())) entitiesToLink.add(entity);
 		}
 
-		executor.shutdown();
-		// We also clear the Identifiers to entities mapping as it is no longer necessary
-		identifierToEntity.clear();
-		nameToIdentifiers.clear();
+		// The affected Entities will be linked again, except the removed ones
+		entitiesToLink.removeAll(removedEntities);
+		changedEntities.addAll(entitiesToLink);
+		return new AppliedChanges(changedEntities, new ArrayList<>(entitiesToLink));
 	}
 
-	// Helper function to link a single Entity
-	private void linkEntity(AnalysisEntity entity) {
+	// Helper recursive function to remove the Entities of a removed subtree from the analysis context
+	private void removeNode(AnalysisContext context, TreeItem<AnalysisEntity> node, Set<AnalysisEntity> entitiesToLink, Set<AnalysisEntity> removedEntities, Set<String> changedFileTypes) {
+		for (TreeItem<AnalysisEntity> child : node.getChildren()) {
+			removeNode(context, child, entitiesToLink, removedEntities, changedFileTypes);
+		}
 
-		// We add the linking entry to the analysis log and add the Dependencies to the Entity
-		addToLog("Linking " + entity.getName() + '.' + entity.getExtension());
-		entity.addDependencies(CodeReader.findDependencies(entity, entity.getFileType()));
+		AnalysisEntity entity = node.getValue();
+		context.removeNode(Path.of(entity.getPath()));
+		removedEntities.add(entity);
+
+		if (entity.isCode()) {
+			context.removeFileData(entity, entitiesToLink);
+			changedFileTypes.add(entity.getFileType());
+		}
+	}
+
+	// Helper function to create the scan exclusions from the user settings
+	private static ScanExclusions createExclusions(AnalysisContext context) {
+		return new ScanExclusions(context.getRoot(), SettingsHandler.getExcludedPatterns(), SettingsHandler.getUseGitignore(), SettingsHandler.getMaxFileSize());
+	}
+
+	// Helper function to check if an entry outside of a walk is excluded from the analysis
+	private static boolean isExcluded(AnalysisContext context, Path path, BasicFileAttributes attributes) {
+		// Entries outside of the analyzed directory are always excluded
+		if (!path.startsWith(context.getRoot())) return true;
+
+		// The walk visits files up to the maximum depth, but it can descend only the directories above it
+		int maxDepth = SettingsHandler.getMaxScanDepth();
+		int depth = getDepth(context, path);
+		if (maxDepth > 0 && (depth > maxDepth || (attributes.isDirectory() && depth == maxDepth))) return true;
+
+		return createExclusions(context).excludesPath(path, attributes);
+	}
+
+	// Helper function to get the depth of a path from the analyzed directory
+	private static int getDepth(AnalysisContext context, Path path) {
+		return context.getRoot().relativize(path).getNameCount();
+	}
+
+	// Helper function to check if a file changed since it was read
+	private static boolean isModified(AnalysisEntity entity, BasicFileAttributes attributes) {
+		return entity.getModifiedTime() != attributes.lastModifiedTime().toMillis() || entity.getStorageSize() != attributes.size();
 	}
 }
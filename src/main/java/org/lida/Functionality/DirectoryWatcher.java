@@ -0,0 +1,196 @@
+package org.lida.Functionality;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+
+// Class watching the directories of an analysis and reporting the paths of the files and directories that changed inside them.
+// It uses the file system WatchService when available, and otherwise polls the watched directories
+public class DirectoryWatcher {
+
+	// Time without new events after which the collected changes are reported, so that a burst of changes is handled at once
+	private static final long DEBOUNCE_MILLIS = 300;
+
+	// Time between two polls of the watched directories, when the WatchService isn't available
+	private static final long POLL_INTERVAL_MILLIS = 3000;
+
+	// Record storing the state of a directory entry, used by the polling to find its changes
+	private record EntryState(boolean directory, long modifiedTime, long size) {
+		/*
+		The data inside the record are:
+			flag indicating whether the entry is a directory,
+			last modified time of the entry in milliseconds,
+			size of the entry in bytes
+		 */
+	}
+
+	// --------------------- Watcher data ---------------------
+
+	// Supplier of the directories to watch, which are the directories of the analysis tree
+	private final Supplier<Collection<Path>> directories;
+
+	// Function receiving the changed paths. It's called by the watching thread
+	private final Consumer<Set<Path>> onChanges;
+
+	// WatchService used to watch the directories. It's null if the polling fallback is used
+	private WatchService watchService = null;
+
+	// Thread watching or polling the directories
+	private Thread watchThread = null;
+
+	// Flag to stop the watching thread
+	private volatile boolean running = false;
+
+	// --------------------- Constructor ---------------------
+
+	public DirectoryWatcher(Supplier<Collection<Path>> directories, Consumer<Set<Path>> onChanges) {
+		this.directories = directories;
+		this.onChanges = onChanges;
+	}
+
+	// --------------------- Public functions ---------------------
+
+	// Starts watching the directories on a new daemon thread
+	public void start() {
+		if (running) return;
+		running = true;
+
+		// We try to register every directory to a WatchService, falling back to the polling if it's not supported
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+			for (Path directory : directories.get()) watchDirectory(directory);
+		} catch (IOException | UnsupportedOperationException e) {
+			System.err.println("Watch service unavailable, polling the directory instead: " + e.getMessage());
+			closeWatchService();
+		}
+
+		watchThread = Thread.ofPlatform().daemon().name("LIDA directory watcher").start((watchService != null) ? this::watch : this::poll);
+	}
+
+	// Stops watching the directories
+	public void stop() {
+		running = false;
+		if (watchThread != null) watchThread.interrupt();
+		closeWatchService();
+	}
+
+	// Starts watching a new directory. It must be called when a directory is added to the analysis tree
+	public void watchDirectory(Path directory) throws IOException {
+		WatchService service = watchService;
+		if (service != null) directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+	}
+
+	// --------------------- Watching functions ---------------------
+
+	// Function run by the watching thread when the WatchService is available
+	private void watch() {
+		WatchService service = watchService;
+		try {
+			while (running) {
+				Set<Path> changes = new LinkedHashSet<>();
+
+				// We wait for the first event, and then we collect the following ones until there's a pause
+				WatchKey key = service.take();
+				while (key != null) {
+					Path directory = (Path) key.watchable();
+
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+
+							// Some events have been lost, so the whole directory must be checked
+							changes.add(directory);
+						} else {
+							changes.add(directory.resolve((Path) event.context()));
+						}
+					}
+
+					// Keys of deleted directories become invalid, and their deletion is reported by their parent
+					key.reset();
+					key = service.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+				}
+
+				if (!changes.isEmpty()) report(changes);
+			}
+		} catch (InterruptedException | ClosedWatchServiceException _) {
+			// The watcher has been stopped
+		}
+	}
+
+	// Function run by the watching thread when the WatchService isn't available
+	private void poll() {
+		// We take the first snapshot of the directories, which the next ones will be compared to
+		Map<Path, EntryState> snapshot = takeSnapshot();
+
+		try {
+			while (running) {
+				Thread.sleep(POLL_INTERVAL_MILLIS);
+				Map<Path, EntryState> newSnapshot = takeSnapshot();
+				Set<Path> changes = new LinkedHashSet<>();
+
+				// Entries that are new or whose file changed are reported
+				for (Map.Entry<Path, EntryState> entry : newSnapshot.entrySet()) {
+					EntryState oldState = snapshot.get(entry.getKey());
+					if (oldState == null || oldState.directory() != entry.getValue().directory() || (!oldState.directory() && !oldState.equals(entry.getValue()))) {
+						changes.add(entry.getKey());
+					}
+				}
+
+				// As well as the deleted ones
+				for (Path path : snapshot.keySet()) {
+					if (!newSnapshot.containsKey(path)) changes.add(path);
+				}
+
+				snapshot = newSnapshot;
+				if (!changes.isEmpty()) report(changes);
+			}
+		} catch (InterruptedException _) {
+			// The watcher has been stopped
+		}
+	}
+
+	// Helper function to read the state of every entry inside the watched directories
+	private Map<Path, EntryState> takeSnapshot() {
+		Map<Path, EntryState> snapshot = new HashMap<>();
+
+		for (Path directory : directories.get()) {
+			try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+				for (Path entry : entries) {
+					try {
+						BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+						snapshot.put(entry, new EntryState(attributes.isDirectory(), attributes.lastModifiedTime().toMillis(), attributes.size()));
+					} catch (IOException _) {
+						// Entries deleted while polling are found by the next poll
+					}
+				}
+			} catch (IOException _) {
+				// Deleted directories are reported by their parent
+			}
+		}
+
+		return snapshot;
+	}
+
+	// Helper function to report the changes, without stopping the watcher in case of errors
+	private void report(Set<Path> changes) {
+		try {
+			onChanges.accept(changes);
+		} catch (Exception e) {
+			System.err.println("Error while handling the directory changes: " + e.getMessage());
+		}
+	}
+
+	// Helper function to close the WatchService, if open
+	private void closeWatchService() {
+		if (watchService == null) return;
+		try {
+			watchService.close();
+		} catch (IOException _) {
+		}
+		watchService = null;
+	}
+}
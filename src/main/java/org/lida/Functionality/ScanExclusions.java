@@ -0,0 +1,260 @@
+package org.lida.Functionality;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+
+// Class deciding which files and directories are excluded from the scan, so that they are never listed or read.
+// It follows the directories visited by a single walk, so an instance must be used by one scan at a time
+public class ScanExclusions {
+
+	// Name of the files containing git's ignore rules
+	private static final String GITIGNORE_FILE = ".gitignore";
+
+	// Record storing a single rule read from a .gitignore file
+	private record GitignoreRule(Path base, Pattern pattern, boolean negated, boolean directoryOnly, boolean anchored) {
+		/*
+		The data inside the record are:
+			directory containing the .gitignore file,
+			pattern compiled from the rule's glob,
+			negation flag for rules starting with '!', that include again what a previous rule excluded,
+			flag for rules ending with '/', that only match directories,
+			flag for rules containing a '/', that match the path from the base directory instead of the name only
+		 */
+	}
+
+	// --------------------- Exclusion data ---------------------
+
+	// Root directory of the scan, from which the glob patterns containing a '/' are matched
+	private final Path root;
+
+	// Matchers of the user glob patterns matching the entry name only, and the ones matching the path from the root
+	private final List<PathMatcher> nameMatchers = new ArrayList<>();
+	private final List<PathMatcher> pathMatchers = new ArrayList<>();
+
+	// Flag to read the .gitignore files of the visited directories
+	private final boolean useGitignore;
+
+	// Maximum size in bytes of the scanned files. If 0 or less, there is no limit
+	private final long maxFileSize;
+
+	// Rules of the .gitignore files inside the directories currently being visited, from the root to the deepest one
+	private final Deque<List<GitignoreRule>> gitignoreRules = new ArrayDeque<>();
+
+	// --------------------- Constructor ---------------------
+
+	public ScanExclusions(Path root, List<String> excludedPatterns, boolean useGitignore, long maxFileSize) {
+		this.root = root;
+		this.useGitignore = useGitignore;
+		this.maxFileSize = maxFileSize;
+
+		// Patterns without a '/' match the name of the entry at any depth, the others match its path from the root
+		if (excludedPatterns != null) {
+			FileSystem fileSystem = root.getFileSystem();
+			for (String pattern : excludedPatterns) {
+				if ((pattern = pattern.trim()).isEmpty()) continue;
+
+				try {
+					if (pattern.contains("/")) {
+						pathMatchers.add(fileSystem.getPathMatcher("glob:" + pattern));
+					} else {
+						nameMatchers.add(fileSystem.getPathMatcher("glob:" + pattern));
+					}
+				} catch (IllegalArgumentException e) {
+					System.err.println("Invalid exclusion pattern: " + pattern + ": " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	// --------------------- Public functions ---------------------
+
+	// Checks if a directory must be skipped with its whole subtree. The root of the scan is never excluded
+	public boolean excludesDirectory(Path directory) {
+		return !directory.equals(root) && isExcluded(directory, true);
+	}
+
+	// Checks if a file must be skipped
+	public boolean excludesFile(Path file, BasicFileAttributes attributes) {
+
+		// Directories reaching the file visit are the ones at the maximum depth, so they can't be descended
+		if (attributes.isDirectory()) return true;
+
+		if (maxFileSize > 0 && attributes.size() > maxFileSize) return true;
+		return isExcluded(file, false);
+	}
+
+	// Must be called when the walk enters a directory that isn't excluded, to load its .gitignore rules
+	public void enterDirectory(Path directory) {
+		gitignoreRules.addLast(useGitignore ? readGitignore(directory) : List.of());
+	}
+
+	// Must be called when the walk finishes visiting a directory entered before
+	public void exitDirectory() {
+		gitignoreRules.removeLast();
+	}
+
+	// Checks if a file or directory must be skipped outside of a walk, loading the .gitignore rules of the directories from the root to its parent
+	public boolean excludesPath(Path path, BasicFileAttributes attributes) {
+		int enteredDirectories = 0;
+		try {
+			for (Path directory : getParents(path)) {
+				if (excludesDirectory(directory)) return true;
+				enterDirectory(directory);
+				enteredDirectories++;
+			}
+
+			return attributes.isDirectory() ? excludesDirectory(path) : excludesFile(path, attributes);
+		} finally {
+			for (; enteredDirectories > 0; enteredDirectories--) exitDirectory();
+		}
+	}
+
+	// Enters the directories from the root to the parent of a directory, so that a walk can start from it
+	public void enterParents(Path directory) {
+		for (Path parent : getParents(directory)) enterDirectory(parent);
+	}
+
+	// --------------------- Helper functions ---------------------
+
+	// Helper function to get the directories from the root to the parent of a path
+	private List<Path> getParents(Path path) {
+		List<Path> parents = new ArrayList<>();
+		for (Path parent = path.getParent(); parent != null && parent.startsWith(root); parent = parent.getParent()) {
+			parents.addFirst(parent);
+		}
+		return parents;
+	}
+
+	// Helper function to check the user patterns and the .gitignore rules on a file or directory
+	private boolean isExcluded(Path path, boolean isDirectory) {
+
+		// We first check the user patterns
+		Path name = path.getFileName();
+		for (PathMatcher matcher : nameMatchers) if (name != null && matcher.matches(name)) return true;
+
+		if (!pathMatchers.isEmpty()) {
+			Path relativePath = root.relativize(path);
+			for (PathMatcher matcher : pathMatchers) if (matcher.matches(relativePath)) return true;
+		}
+
+		// Then, we check the .gitignore rules: the last matching rule decides, so we start from the deepest directory and from the last rule
+		for (var iterator = gitignoreRules.descendingIterator(); iterator.hasNext(); ) {
+			List<GitignoreRule> rules = iterator.next();
+
+			for (int i = rules.size() - 1; i >= 0; i--) {
+				GitignoreRule rule = rules.get(i);
+				if (rule.directoryOnly() && !isDirectory) continue;
+
+				// Anchored rules match the path from the .gitignore directory, the others match the name only
+				String target = rule.anchored() ? rule.base().relativize(path).toString().replace('\\', '/') : (name == null ? "" : name.toString());
+				if (rule.pattern().matcher(target).matches()) return !rule.negated();
+			}
+		}
+
+		return false;
+	}
+
+	// Helper function to read the rules of the .gitignore file inside a directory, if there is one
+	private static List<GitignoreRule> readGitignore(Path directory) {
+		Path gitignore = directory.resolve(GITIGNORE_FILE);
+		if (!Files.isRegularFile(gitignore)) return List.of();
+
+		List<GitignoreRule> rules = new ArrayList<>();
+		try {
+			for (String line : Files.readAllLines(gitignore)) {
+
+				// We ignore empty and comment lines
+				line = line.strip();
+				if (line.isEmpty() || line.startsWith("#")) continue;
+
+				// A starting '!' negates the rule, while a starting '\' escapes the first character
+				boolean negated = line.startsWith("!");
+				if (negated) line = line.substring(1);
+				if (line.startsWith("\\")) line = line.substring(1);
+
+				// A trailing '/' makes the rule match only directories
+				boolean directoryOnly = line.endsWith("/");
+				if (directoryOnly) line = line.substring(0, line.length() - 1);
+
+				// Any other '/' anchors the rule to the .gitignore directory
+				boolean anchored = line.contains("/");
+				if (line.startsWith("/")) line = line.substring(1);
+				if (line.isEmpty()) continue;
+
+				try {
+					rules.add(new GitignoreRule(directory, Pattern.compile(globToRegex(line)), negated, directoryOnly, anchored));
+				} catch (PatternSyntaxException _) {
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Error while reading " + gitignore + ": " + e.getMessage());
+		}
+
+		return rules;
+	}
+
+	// Helper function to convert a .gitignore glob to a regex
+	private static String globToRegex(String glob) {
+		StringBuilder regex = new StringBuilder();
+
+		int pos = 0;
+		while (pos < glob.length()) {
+			char c = glob.charAt(pos);
+
+			if (glob.startsWith("**/", pos)) {
+
+				// "**/" matches any number of directories, even none
+				regex.append("(?:.*/)?");
+				pos += 3;
+				continue;
+			} else if (glob.startsWith("**", pos)) {
+
+				// "**" matches everything, directory separators included
+				regex.append(".*");
+				pos += 2;
+				continue;
+			}
+
+			switch (c) {
+				case '*' -> regex.append("[^/]*");
+				case '?' -> regex.append("[^/]");
+				case '[' -> {
+
+					// Character classes are kept, using '^' for their negation
+					int end = glob.indexOf(']', pos + 1);
+					if (end == -1) {
+						regex.append("\\[");
+					} else {
+						String content = glob.substring(pos + 1, end);
+						if (content.startsWith("!")) content = "^" + content.substring(1);
+						regex.append('[').append(content.replace("\\", "\\\\")).append(']');
+						pos = end;
+					}
+				}
+				case '\\' -> {
+
+					// Escaped characters are matched literally
+					if (pos + 1 < glob.length()) appendLiteral(regex, glob.charAt(++pos));
+				}
+				default -> appendLiteral(regex, c);
+			}
+			pos++;
+		}
+
+		return regex.toString();
+	}
+
+	// Helper function to add a character to a regex, escaping it if it isn't a letter or a digit
+	private static void appendLiteral(StringBuilder regex, char c) {
+		if (!Character.isLetterOrDigit(c)) regex.append('\\');
+		regex.append(c);
+	}
+}
@@ -13,7 +13,6 @@ import org.lida.Entity.*;
 
 import java.io.IOException;
 import java.util.Iterator;
-import java.util.List;
 
 // Controller of FileDetails.fxml, used to display details about a file AnalysisEntity
 public class FileDetails {
@@ -74,29 +73,27 @@ public class FileDetails {
 				// Each cell represents a FileDependency, so we prepare to store all of it's rules
 				StringBuilder rulesString = new StringBuilder();
 
-				// Depending on what we need to show, we fill the values accordingly
-				List<FileDependency> values;
+				// Depending on what we need to show, we get the FileDependency of the cell's entity accordingly
+				FileDependency fileDependency;
 				if (depensTapPane.getSelectionModel().getSelectedItem().getText().equals("Dependencies")) {
-					values = fileEntity.getDependencies();
+					fileDependency = fileEntity.getDependency(entity);
 				} else {
-					values = fileEntity.getDependants();
+					fileDependency = fileEntity.getDependant(entity);
 				}
 
-				for (FileDependency fileDependency : values) {
-					if (fileDependency.getEntity().equals(entity)) {
-						// If the entity of the FileDependency equals to the one of the cell, we proceed
-						Iterator<Dependency> iterator = fileDependency.getDependencies().iterator();
-						while (iterator.hasNext()) {
+				if (fileDependency != null) {
+					// If the cell's entity has a FileDependency, we proceed
+					Iterator<Dependency> iterator = fileDependency.getDependencies().iterator();
+					while (iterator.hasNext()) {
 
-							// For each Dependency of the FileDependency, we check if it's hidden
-							Dependency dependency = iterator.next();
+						// For each Dependency of the FileDependency, we check if it's hidden
+						Dependency dependency = iterator.next();
 
-							// We add the Dependency's rule and identifier
-							rulesString.append(dependency.ruleName());
-							if (!dependency.hidden()) rulesString.append(": \"").append(dependency.identifier().name()).append("\"");
+						// We add the Dependency's rule and identifier
+						rulesString.append(dependency.ruleName());
+						if (!dependency.hidden()) rulesString.append(": \"").append(dependency.identifier().name()).append("\"");
 
-							if (iterator.hasNext()) rulesString.append(", ");
-						}
+						if (iterator.hasNext()) rulesString.append(", ");
 					}
 				}
 
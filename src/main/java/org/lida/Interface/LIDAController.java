@@ -23,6 +23,7 @@ import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.TextArea;
 import javafx.scene.effect.DropShadow;
 import javafx.scene.image.WritableImage;
 import javafx.scene.layout.*;
@@ -39,6 +40,7 @@ import javafx.util.Duration;
 import org.lida.Entity.AnalysisEntity;
 import org.lida.Functionality.DirectoryAnalyzer;
 import org.lida.Functionality.GraphCreator;
+import org.lida.Languages.RuleProfiler;
 import org.lida.Settings.SettingsHandler;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.shape.Polygon;
@@ -84,6 +86,14 @@ public class LIDAController {
 	private CheckMenuItem hiddenDirMenuItem;
 	@FXML
 	private CheckMenuItem showSingleEntitiesMenuItem;
+	@FXML
+	private CheckMenuItem useGitignoreMenuItem;
+	@FXML
+	private CheckMenuItem useAnalysisCacheMenuItem;
+	@FXML
+	private CheckMenuItem watchDirectoryMenuItem;
+	@FXML
+	private CheckMenuItem profileRulesMenuItem;
 
 	@FXML
 	private Menu graphLayoutMenu;
@@ -232,6 +242,12 @@ public class LIDAController {
 		// We clear the current entity details
 		clearDetails();
 
+		// When the watched directory changes, we recreate the graph with the updated analysis
+		directoryAnalyzer.setOnEntitiesChanged(changedEntities -> {
+			createGraph();
+			printMessage("Updated " + changedEntities.size() + " entities");
+		});
+
 		// We add the directory selection action on the select new directory menu item
 		selectNewDirectoryMenuItem.setOnAction(_ -> handleDirectorySelection(selectNewDirectoryMenuItem.getText()));
 		// Initial refresh of the recent directory menu
@@ -444,6 +460,48 @@ public class LIDAController {
 		}
 	}
 
+	// Shows the rules profile of the current analysis, which can also be exported as a CSV file
+	@FXML
+	private void showRulesProfile() {
+
+		// Without a profile, we tell the user how to collect one
+		RuleProfiler ruleProfiler = directoryAnalyzer.getRuleProfiler();
+		if (ruleProfiler == null || !ruleProfiler.hasProfile()) {
+			printMessage("No rules profile: enable \"Profile the rules during the analysis\" in the File menu, then analyze a directory");
+			return;
+		}
+
+		// The report is shown inside a text area, with a monospaced font to keep its columns aligned
+		TextArea reportArea = new TextArea(ruleProfiler.getReport());
+		reportArea.setEditable(false);
+		reportArea.setStyle("-fx-font-family: monospace;");
+		reportArea.setPrefSize(1000, 600);
+
+		ButtonType exportButton = new ButtonType("Export as CSV");
+		Alert alert = new Alert(Alert.AlertType.INFORMATION, "", exportButton, ButtonType.CLOSE);
+		alert.setTitle("Rules profile");
+		alert.setHeaderText("Rules of the current analysis, starting from the one that took the most time");
+		alert.getDialogPane().setContent(reportArea);
+		alert.setResizable(true);
+
+		// If the user wants to export the profile, we ask for the file path
+		if (alert.showAndWait().orElse(ButtonType.CLOSE) != exportButton || isChooserOpen) return;
+		isChooserOpen = true;
+
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.setTitle("Select path to export the rules profile");
+		fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV (*.csv)", "*.csv"));
+		File file = fileChooser.showSaveDialog(null);
+
+		isChooserOpen = false;
+		if (file == null) return;
+		try {
+			ruleProfiler.export(file);
+		} catch (IOException e) {
+			printMessage("Error while exporting the rules profile: " + e.getMessage());
+		}
+	}
+
 	// Opens github link
 	@FXML
 	private void showAbout() {
@@ -455,12 +513,21 @@ public class LIDAController {
 		}
 	}
 
+	// Updates the profile MenuItem selection based on the stored settings
+	@FXML
+	private void onFileShowing() {
+		profileRulesMenuItem.setSelected(SettingsHandler.getProfileRules());
+	}
+
 	// Updates the settings MenuItems selections based on the stored settings
 	@FXML
 	private void onSettingsShowing() {
 		filesNoExtMenuItem.setSelected(SettingsHandler.getFilesNoExt());
 		hiddenDirMenuItem.setSelected(SettingsHandler.getHiddenDirectories());
 		showSingleEntitiesMenuItem.setSelected(SettingsHandler.getSingleEntities());
+		useGitignoreMenuItem.setSelected(SettingsHandler.getUseGitignore());
+		useAnalysisCacheMenuItem.setSelected(SettingsHandler.getUseAnalysisCache());
+		watchDirectoryMenuItem.setSelected(SettingsHandler.getWatchDirectory());
 	}
 
 	// Toggles the display of files without extensions and recreates the graph.
@@ -484,10 +551,36 @@ public class LIDAController {
 		createGraph();
 	}
 
+	// Toggles the exclusion of the files ignored by the .gitignore files, which is applied starting from the next analysis.
+	@FXML
+	private void toggleUseGitignore() {
+		SettingsHandler.toggleUseGitignore();
+	}
+
+	// Toggles the cache of the analysis results, which is used starting from the next analysis.
+	@FXML
+	private void toggleUseAnalysisCache() {
+		SettingsHandler.toggleUseAnalysisCache();
+	}
+
+	// Toggles the watching of the analyzed directory, which updates the analysis when its files change.
+	@FXML
+	private void toggleWatchDirectory() {
+		SettingsHandler.toggleWatchDirectory();
+		directoryAnalyzer.setWatching(SettingsHandler.getWatchDirectory());
+	}
+
+	// Toggles the profile of the rules, which is collected starting from the next analysis.
+	@FXML
+	private void toggleProfileRules() {
+		SettingsHandler.toggleProfileRules();
+	}
+
 	// Restores settings to default values and recreates the graph.
 	@FXML
 	private void settingsToDefault() {
 		SettingsHandler.restoreToDefault();
+		directoryAnalyzer.setWatching(SettingsHandler.getWatchDirectory());
 		updateGraphLayoutMenu();
 		createGraph();
 	}
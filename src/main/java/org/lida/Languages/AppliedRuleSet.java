@@ -0,0 +1,62 @@
+package org.lida.Languages;
+
+
+// Class storing the rules applied by an Entity while finding its Dependencies, as pairs of a rule name id and a target Entity id.
+// Each pair is packed in a long and kept inside an open addressing table, so adding and checking a pair doesn't allocate
+public class AppliedRuleSet {
+
+	// Value of the empty slots. Entity ids start from 1, so no pair is packed as 0
+	private static final long EMPTY = 0;
+
+	// Table of the packed pairs, whose length is always a power of two
+	private long[] slots = new long[16];
+	private int size = 0;
+
+	// --------------------- Public functions ---------------------
+
+	// Adds the application of a rule on a target Entity
+	public void add(int ruleNameId, int targetId) {
+		long pair = pack(ruleNameId, targetId);
+		int slot = findSlot(slots, pair);
+		if (slots[slot] == pair) return;
+
+		slots[slot] = pair;
+		size++;
+
+		// The table is kept at most half full, so the searches stay short
+		if (size * 2 > slots.length) grow();
+	}
+
+	// Returns true if the rule has been applied on the target Entity
+	public boolean contains(int ruleNameId, int targetId) {
+		if (ruleNameId < 0) return false;
+		long pair = pack(ruleNameId, targetId);
+		return slots[findSlot(slots, pair)] == pair;
+	}
+
+	// --------------------- Helper functions ---------------------
+
+	// Helper function to pack a pair inside a long
+	private static long pack(int ruleNameId, int targetId) {
+		return ((long) ruleNameId << 32) | (targetId & 0xFFFFFFFFL);
+	}
+
+	// Helper function to find the slot of a pair, or the empty slot where it would be added
+	private static int findSlot(long[] table, long pair) {
+		int mask = table.length - 1;
+
+		// The bits of the pair are mixed, so the pairs of the same rule don't end up in consecutive slots
+		int slot = (int) ((pair * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+		while (table[slot] != EMPTY && table[slot] != pair) slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	// Helper function to double the table, adding the pairs again in their new slots
+	private void grow() {
+		long[] newSlots = new long[slots.length * 2];
+		for (long pair : slots) {
+			if (pair != EMPTY) newSlots[findSlot(newSlots, pair)] = pair;
+		}
+		slots = newSlots;
+	}
+}
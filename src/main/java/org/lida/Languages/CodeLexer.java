@@ -0,0 +1,308 @@
+package org.lida.Languages;
+
+import java.util.*;
+
+
+// Class splitting the code lines of a file into a token stream, compiled once for a language from its rules patterns. It runs on the lines
+// stripped by the CodeStripper, itself compiled from the Comments and Text declarations, so comments and code texts never reach the tokens.
+// Identifiers, keywords and punctuation are interned as ids by a table of each file, and each rule Pattern is reduced to the tokens that every
+// match must contain, which are matched on the stream of a line before running the Pattern to catch its string
+public class CodeLexer {
+
+	// Characters handled by the punctuation table, whose token id is the character itself. Other punctuation characters are interned as they are found
+	private static final int TABLE_CHARS = 128;
+
+	// Result shared by all the tokens that aren't required by any rule
+	private static final int[] NO_PIECES = new int[0];
+
+	// Kinds of match between a token and a piece of a required literal. A word at the edge of a literal can be part of a longer token,
+	// unless the Pattern doesn't allow a word character next to it
+	private enum PieceType {exact, prefix, suffix, infix}
+
+	// Record storing a token, or a part of a token, required by the rules patterns
+	private record Piece(String text, PieceType type) {
+		/*
+		The data inside the record are:
+			characters of the piece, which are a word or a single punctuation character,
+			how the characters must be found inside a token
+		 */
+	}
+
+	// Record storing the tokens required by a rule Pattern
+	private record TokenPattern(int[] pieces, int[][] literalToPieces, boolean[] literalToJoined) {
+		/*
+		The data inside the record are:
+			every piece required by the Pattern, so that a line missing one of them is skipped without looking at the order,
+			pieces of each required literal in the order of the match, which must be found in consecutive tokens,
+			flag for each literal indicating whether it can start inside the last token of the previous literal
+		 */
+	}
+
+	// --------------------- Token table ---------------------
+
+	// Class interning the tokens of a single file, so that the pieces of each distinct token are searched once per file and no token
+	// outlives the reading of its file. A table is only used by the thread reading its file
+	public final class TokenTable {
+
+		// Interned id of every word, or other punctuation character, found in the file
+		private final Map<String, Integer> tokenToId = new HashMap<>();
+
+		// Pieces found inside each token, indexed by the token id. The ids below TABLE_CHARS are the punctuation characters of the lexer
+		private int[][] idToPieces = Arrays.copyOf(charToPieces, 2 * TABLE_CHARS);
+		private int tokensCount = TABLE_CHARS;
+
+		// Stamps of the texts already found inside the token being interned
+		private final int[] textToStamp = new int[textToPieces.length];
+		private int stamp = 0;
+
+		private TokenTable() {}
+
+		// Returns the pieces found inside each token of the file, indexed by the token id
+		public int[][] getTokenPieces() {
+			return Arrays.copyOf(idToPieces, tokensCount);
+		}
+
+		// Helper function to get the id of a token, interning it if it's the first time it is found inside the file
+		private int getToken(String text) {
+			Integer id = tokenToId.get(text);
+			if (id != null) return id;
+
+			if (tokensCount == idToPieces.length) idToPieces = Arrays.copyOf(idToPieces, 2 * idToPieces.length);
+			idToPieces[tokensCount] = findPieces(text, textToStamp, ++stamp);
+			tokenToId.put(text, tokensCount);
+			return tokensCount++;
+		}
+	}
+
+	// --------------------- Rules data ---------------------
+
+	// Every piece required by the rules patterns, identified by its position
+	private final List<Piece> pieces = new ArrayList<>();
+
+	// Tokens required by the Pattern of each pattern group, or null if the Pattern doesn't require any
+	private final TokenPattern[] groupToTokenPattern;
+
+	// Prefilter searching the distinct texts of the pieces inside each new token, and the pieces of each text
+	private final LiteralPrefilter piecePrefilter;
+	private final int[][] textToPieces;
+
+	// Pieces found inside the punctuation characters below TABLE_CHARS, searched when the lexer is built. Word and space characters have none
+	private final int[][] charToPieces = new int[TABLE_CHARS][];
+
+	// --------------------- Constructor ---------------------
+
+	public CodeLexer(List<List<LiteralPrefilter.RequiredLiteral>> groupToLiterals) {
+		Map<Piece, Integer> pieceToId = new HashMap<>();
+		Map<String, List<Integer>> textToPieceList = new LinkedHashMap<>();
+		groupToTokenPattern = new TokenPattern[groupToLiterals.size()];
+
+		for (int group = 0; group < groupToLiterals.size(); group++) {
+			List<LiteralPrefilter.RequiredLiteral> literals = groupToLiterals.get(group);
+			if (literals == null) continue;
+
+			Set<Integer> patternPieces = new LinkedHashSet<>();
+			List<int[]> literalToPieces = new ArrayList<>();
+			List<Boolean> literalToJoined = new ArrayList<>();
+			boolean previousOpen = false;
+
+			for (LiteralPrefilter.RequiredLiteral literal : literals) {
+				List<Piece> literalPieces = splitLiteral(literal);
+
+				// Literals made only of spaces don't have tokens, but they still separate the tokens of the literals around them
+				if (literalPieces.isEmpty()) {
+					previousOpen = false;
+					continue;
+				}
+
+				// Two literals share a token only if the first can continue on the right and the second on the left
+				PieceType firstType = literalPieces.getFirst().type();
+				literalToJoined.add(previousOpen && (firstType == PieceType.suffix || firstType == PieceType.infix));
+				PieceType lastType = literalPieces.getLast().type();
+				previousOpen = lastType == PieceType.prefix || lastType == PieceType.infix;
+
+				int[] pieceIds = new int[literalPieces.size()];
+				for (int i = 0; i < pieceIds.length; i++) {
+					pieceIds[i] = pieceToId.computeIfAbsent(literalPieces.get(i), piece -> {
+						pieces.add(piece);
+						textToPieceList.computeIfAbsent(piece.text(), _ -> new ArrayList<>()).add(pieces.size() - 1);
+						return pieces.size() - 1;
+					});
+					patternPieces.add(pieceIds[i]);
+				}
+				literalToPieces.add(pieceIds);
+			}
+
+			if (literalToPieces.isEmpty()) continue;
+			boolean[] joined = new boolean[literalToJoined.size()];
+			for (int i = 0; i < joined.length; i++) joined[i] = literalToJoined.get(i);
+			groupToTokenPattern[group] = new TokenPattern(patternPieces.stream().mapToInt(Integer::intValue).toArray(), literalToPieces.toArray(new int[0][]), joined);
+		}
+
+		// The prefilter searches every distinct text once, and the type of each of its pieces is checked on the found ones
+		piecePrefilter = new LiteralPrefilter(new ArrayList<>(textToPieceList.keySet()));
+		textToPieces = textToPieceList.values().stream().map(list -> list.stream().mapToInt(Integer::intValue).toArray()).toArray(int[][]::new);
+
+		// Finally, we search the pieces of the most common punctuation characters, so that they don't need to be looked up
+		int[] textToStamp = new int[textToPieces.length];
+		for (char c = 0; c < TABLE_CHARS; c++) {
+			charToPieces[c] = (isWordChar(c) || isSpaceChar(c)) ? NO_PIECES : findPieces(String.valueOf(c), textToStamp, c + 1);
+		}
+	}
+
+	// Helper function to split a required literal into the pieces of its tokens, in the same way the code lines are split
+	private static List<Piece> splitLiteral(LiteralPrefilter.RequiredLiteral literal) {
+		List<Piece> literalPieces = new ArrayList<>();
+		String text = literal.text();
+
+		for (int i = 0; i < text.length(); ) {
+			char c = text.charAt(i);
+			if (isSpaceChar(c)) {
+				i++;
+			} else if (!isWordChar(c)) {
+				literalPieces.add(new Piece(String.valueOf(c), PieceType.exact));
+				i++;
+			} else {
+				int end = i + 1;
+				while (end < text.length() && isWordChar(text.charAt(end))) end++;
+
+				// A word at the edge of the literal continues inside the token, unless the Pattern bounds it
+				boolean openStart = i == 0 && !literal.boundedStart();
+				boolean openEnd = end == text.length() && !literal.boundedEnd();
+				PieceType type = openStart ? (openEnd ? PieceType.infix : PieceType.suffix) : (openEnd ? PieceType.prefix : PieceType.exact);
+				literalPieces.add(new Piece(text.substring(i, end), type));
+				i = end;
+			}
+		}
+
+		return literalPieces;
+	}
+
+	// --------------------- Public functions ---------------------
+
+	// Returns the number of pieces required by the rules patterns
+	public int getPiecesCount() {
+		return pieces.size();
+	}
+
+	// Returns a new table to intern the tokens of a file
+	public TokenTable newTokenTable() {
+		return new TokenTable();
+	}
+
+	// Returns true if the Pattern of the group requires some tokens
+	public boolean hasTokenPattern(int group) {
+		return group >= 0 && groupToTokenPattern[group] != null;
+	}
+
+	// Splits a stripped code line into tokens, adding their ids inside the file's table to the stream after the given number of tokens, and returns
+	// the new number. Words are runs of the characters matched by \w, every other character that isn't a space is a punctuation token.
+	// The stream must have room for one token per character of the line
+	public int tokenizeLine(String line, TokenTable tokenTable, int[] tokens, int tokensNumber) {
+		int lineLength = line.length();
+
+		for (int i = 0; i < lineLength; ) {
+			char c = line.charAt(i);
+			if (isWordChar(c)) {
+				int end = i + 1;
+				while (end < lineLength && isWordChar(line.charAt(end))) end++;
+				tokens[tokensNumber++] = tokenTable.getToken(line.substring(i, end));
+				i = end;
+				continue;
+			}
+
+			if (!isSpaceChar(c)) tokens[tokensNumber++] = (c < TABLE_CHARS) ? c : tokenTable.getToken(String.valueOf(c));
+			i++;
+		}
+
+		return tokensNumber;
+	}
+
+	// Stamps the pieces found inside the tokens of a line, between the two given positions of the stream (the end excluded), given the pieces of
+	// each token of the file. Returns false if the line has no piece, so that no rule with a token pattern can match it
+	public boolean stampLinePieces(int[][] tokenToPieces, int[] tokens, int start, int end, int[] pieceToLine, int lineNumber) {
+		boolean found = false;
+
+		for (int i = start; i < end; i++) {
+			for (int piece : tokenToPieces[tokens[i]]) {
+				pieceToLine[piece] = lineNumber;
+				found = true;
+			}
+		}
+
+		return found;
+	}
+
+	// Returns true if the tokens of a line, between the two given positions of the stream (the end excluded), contain the tokens required by the
+	// Pattern of the group in the order of the match. The pieces of the line must have been stamped before
+	public boolean matchesTokenPattern(int group, int[][] tokenToPieces, int[] tokens, int start, int end, int[] pieceToLine, int lineNumber) {
+		if (!hasTokenPattern(group)) return true;
+		TokenPattern tokenPattern = groupToTokenPattern[group];
+
+		// If a required piece isn't inside the line, there's no need to look at the order
+		for (int piece : tokenPattern.pieces()) {
+			if (pieceToLine[piece] != lineNumber) return false;
+		}
+
+		// Each literal is searched after the previous one. The first position of a literal gives the most room to the following ones
+		int position = start;
+		for (int literal = 0; literal < tokenPattern.literalToPieces().length; literal++) {
+			int[] literalPieces = tokenPattern.literalToPieces()[literal];
+			int literalStart = (literal > 0 && tokenPattern.literalToJoined()[literal]) ? position - 1 : position;
+
+			int found = -1;
+			for (int i = literalStart; i + literalPieces.length <= end && found == -1; i++) {
+				boolean matches = true;
+				for (int j = 0; j < literalPieces.length && matches; j++) matches = hasPiece(tokenToPieces[tokens[i + j]], literalPieces[j]);
+				if (matches) found = i;
+			}
+
+			if (found == -1) return false;
+			position = found + literalPieces.length;
+		}
+
+		return true;
+	}
+
+	// --------------------- Helper functions ---------------------
+
+	// Characters matched by \w, which are the only ones inside word tokens
+	static boolean isWordChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+	}
+
+	// Characters matched by \s, which separate the tokens without being part of any
+	static boolean isSpaceChar(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	private static boolean hasPiece(int[] tokenPieces, int piece) {
+		for (int tokenPiece : tokenPieces) {
+			if (tokenPiece == piece) return true;
+		}
+		return false;
+	}
+
+	// Helper function to find the pieces inside a token, searching all their texts at once and then checking where each one must be.
+	// The stamps belong to the caller, so that the lexer can be shared by the threads reading different files
+	private int[] findPieces(String text, int[] textToStamp, int stamp) {
+		if (textToPieces.length == 0) return NO_PIECES;
+		int[] texts = piecePrefilter.findLiterals(text, textToStamp, stamp);
+		if (texts.length == 0) return NO_PIECES;
+
+		List<Integer> found = new ArrayList<>();
+		for (int textIndex : texts) {
+			for (int pieceId : textToPieces[textIndex]) {
+				Piece piece = pieces.get(pieceId);
+				boolean matches = switch (piece.type()) {
+					case exact -> text.equals(piece.text());
+					case prefix -> text.startsWith(piece.text());
+					case suffix -> text.endsWith(piece.text());
+					case infix -> true;
+				};
+				if (matches) found.add(pieceId);
+			}
+		}
+
+		return found.isEmpty() ? NO_PIECES : found.stream().mapToInt(Integer::intValue).toArray();
+	}
+}
@@ -1,18 +1,19 @@
 package org.lida.Languages;
 
 import org.lida.Entity.*;
-import org.lida.Functionality.DirectoryAnalyzer;
+import org.lida.Functionality.AnalysisCache;
+import org.lida.Functionality.AnalysisContext;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
-import java.util.stream.Collectors;
 
 
 // Class responsible for reading code files and filling their Variables, Identifiers and Dependencies
@@ -20,25 +21,37 @@ public class CodeReader {
 
 	// --------------------- Language rules handling ---------------------
 
-	// Map to store the rules for each language, loading them from the respective rules file
-	private static final Map<String, LanguageRules> languageToRules = new HashMap<>();
+	// Map to store the rules for each language, loading them from the respective rules file.
+	// The rules are never changed once loaded, so they are shared by every analysis
+	private static final Map<String, LanguageRules> languageToRules = new ConcurrentHashMap<>();
 
 	// Different types of language rules
 	public enum RuleTypes {variable, identifier, dependency}
 
+	// Regex engines that can run the rules patterns: java.util.regex, or the linear automaton of LinearRegex
+	public enum RegexEngines {java, linear}
+
 	// Retrieves the LanguageRules for a given language. If the rules aren't already loaded in the map, it loads them from the curresponding rules file
 	private static LanguageRules getLanguageRules(String language) {
 		// If the language rules are already loaded inside the map, we can just retrieve them
-		if (languageToRules.containsKey(language)) return languageToRules.get(language);
+		LanguageRules loadedRules = languageToRules.get(language);
+		if (loadedRules != null) return loadedRules;
 
 		synchronized (languageToRules) {
 
+			// Another analysis could have loaded them while we were waiting
+			loadedRules = languageToRules.get(language);
+			if (loadedRules != null) return loadedRules;
+
 			// We must load the language rules and load them inside the map:
 			LanguageRules languageRules = new LanguageRules();
 			try {
 
 				// We try to find the curresponding rules file
 				File rulesFile = new File(Objects.requireNonNull(CodeReader.class.getResource(language)).toURI());
+
+				// We keep the hash of its content, so the cached results of the files read with older rules can be discarded
+				languageRules.setRulesHash(AnalysisCache.hash(Files.readAllBytes(rulesFile.toPath())));
 				BufferedReader br = new BufferedReader(new FileReader(rulesFile));
 				try {
 
@@ -46,15 +59,27 @@ public class CodeReader {
 					String ruleName = null;
 					String rulePattern = null;
 					String constantValue = null;
+					String qualified = null;
 					List<String> ruleConditions = null;
 					int totalNumber = -1;
 					boolean hidden = false;
 					boolean isDebug = false;
+					RegexEngines engine = null;
+					String until = null;
+					int maxLine = -1;
+
+					// The region where the rules are applied can also be declared for a whole section, and it's used by the rules not declaring their own
+					String sectionUntil = null;
+					int sectionMaxLine = -1;
 
 					// We precompile the patterns used to read the rules inside the file
 					Pattern ruleNamePattern = Pattern.compile("^(.*?)\\s*\\{");
 					Pattern patternPattern = Pattern.compile("^pattern:\\s*\"([^\"]+)\";?");
 					Pattern valuePattern = Pattern.compile("[\\t ]*value:\\s*(.*?)(?:;|$)");
+					Pattern qualifiedPattern = Pattern.compile("^qualified:\\s*(.*?);?$");
+					Pattern enginePattern = Pattern.compile("^engine:\\s*(\\w+)\\s*;?$");
+					Pattern untilPattern = Pattern.compile("^until:\\s*\"(.+)\";?$");
+					Pattern maxLinePattern = Pattern.compile("^max_line:\\s*(\\d+)(?:;|$)");
 					Pattern conditionPattern = Pattern.compile("^[\\s+]*condition:\\s*(.*)");
 					Pattern totalPattern = Pattern.compile("^total_number:\\s*(-?\\d+)(?:;|$)");
 					Pattern hiddenPattern = Pattern.compile("\\bhidden\\b(?:;|$)");
@@ -97,7 +122,7 @@ public class CodeReader {
 							for (String values : line.split("],\\s*\\[")) {
 
 								// Each text rule will be in the form of "", \", /", "" or "', \', /', '"
-								String[] tokens = values.split(",\\s*");
+								String[] tokens = Arrays.stream(values.split(",\\s*")).map(String::trim).toArray(String[]::new);
 
 								// The first part is the start of the text, the last one will be the end, and any between are end exceptions
 								languageRules.addCodeText(tokens[0], tokens[tokens.length - 1], new ArrayList<>(Arrays.asList(tokens).subList(1, tokens.length - 1)));
@@ -106,17 +131,54 @@ public class CodeReader {
 							continue;
 						}
 
-						// We read the start of a new rule section
+						// Then, we can encounter the default regex engine of the rules. It will be formatted like this: "Engine = linear"
+						if (line.startsWith("Engine") && line.contains("=")) {
+							languageRules.setDefaultEngine(readEngine(line.substring(line.indexOf('=') + 1).trim()));
+							continue;
+						}
+
+						// We read the start of a new rule section, which resets the region of the section
 						if (line.startsWith("Variables")) {
 							currentSection = RuleTypes.variable;
+							sectionUntil = null;
+							sectionMaxLine = -1;
 							continue;
 						}
 						if (line.startsWith("Dependencies")) {
 							currentSection = RuleTypes.dependency;
+							sectionUntil = null;
+							sectionMaxLine = -1;
 							continue;
 						}
 						if (line.startsWith("Identifiers")) {
 							currentSection = RuleTypes.identifier;
+							sectionUntil = null;
+							sectionMaxLine = -1;
+							continue;
+						}
+
+						// We then process the region end line, before the name line because the pattern can contain '{'. Outside of a rule, it's the region end of the whole section
+						Matcher untilMatcher = untilPattern.matcher(line);
+						if (untilMatcher.find()) {
+
+							// The region end is a pattern too, so we check that it's valid
+							try {
+								Pattern.compile(untilMatcher.group(1));
+							} catch (PatternSyntaxException e) {
+								System.err.println("Invalid region end pattern: " + untilMatcher.group(1) + ": " + e.getMessage());
+								throw new RuntimeException("Invalid region end pattern: " + untilMatcher.group(1), e);
+							}
+
+							if (ruleName == null) sectionUntil = untilMatcher.group(1);
+							else until = untilMatcher.group(1);
+							continue;
+						}
+
+						// We then process the last line of the region. Outside of a rule, it's the last line of the whole section
+						Matcher maxLineMatcher = maxLinePattern.matcher(line);
+						if (maxLineMatcher.find()) {
+							if (ruleName == null) sectionMaxLine = Integer.parseInt(maxLineMatcher.group(1));
+							else maxLine = Integer.parseInt(maxLineMatcher.group(1));
 							continue;
 						}
 
@@ -130,10 +192,14 @@ public class CodeReader {
 							// And reset the other parameters to default, as this is a start of a new rule
 							rulePattern = null;
 							constantValue = null;
+							qualified = null;
 							ruleConditions = null;
 							totalNumber = -1;
 							hidden = false;
 							isDebug = false;
+							engine = null;
+							until = null;
+							maxLine = -1;
 							continue;
 						}
 
@@ -156,6 +222,24 @@ public class CodeReader {
 							}
 						}
 
+						// We then process the regex engine line
+						Matcher engineMatcher = enginePattern.matcher(line);
+						if (engineMatcher.find()) {
+
+							// We store the regex engine of this rule
+							engine = readEngine(engineMatcher.group(1));
+							continue;
+						}
+
+						// We then process the qualified name line
+						Matcher qualifiedMatcher = qualifiedPattern.matcher(line);
+						if (qualifiedMatcher.find()) {
+
+							// We store the qualified name declaration
+							qualified = qualifiedMatcher.group(1);
+							continue;
+						}
+
 						// We then process the constant value line
 						Matcher valueMatcher = valuePattern.matcher(line);
 						if (valueMatcher.find()) {
@@ -212,20 +296,27 @@ public class CodeReader {
 
 							// For the rule to be valid, it must have a name, and then a pattern or a value
 							if (ruleName != null && (rulePattern != null || constantValue != null))
-								languageRules.addRule(new LanguageRule(ruleName, currentSection, rulePattern, totalNumber, ruleConditions, constantValue, hidden, isDebug));
+								languageRules.addRule(new LanguageRule(ruleName, currentSection, rulePattern, totalNumber, ruleConditions, constantValue, qualified, hidden, isDebug, (engine == null) ? languageRules.getDefaultEngine() : engine,
+										(until == null) ? sectionUntil : until, (maxLine == -1) ? sectionMaxLine : maxLine));
 
 							// We then reset all parameters to default
 							ruleName = null;
 							rulePattern = null;
 							constantValue = null;
+							qualified = null;
 							ruleConditions = null;
 							totalNumber = -1;
 							hidden = false;
 							isDebug = false;
+							engine = null;
+							until = null;
+							maxLine = -1;
 						}
 					}
 
 					// If we finished iterating without errors, we can safely say that the rules are valid and can be put in the mapping
+					languageRules.buildCodeStripper();
+					languageRules.buildCodeLexer();
 					System.out.println("Loaded " + languageRules.getCommendsCount() + " comments, " + languageRules.getCodeTexts().size() + " texts and " + languageRules.getRules().size() + " rules for " + language);
 					languageToRules.put(language, languageRules);
 				} catch (Exception e) {
@@ -241,323 +332,377 @@ public class CodeReader {
 				languageToRules.put(language, new LanguageRules());
 			}
 
-			return languageRules;
+			// The returned rules are the ones inside the map, which are empty if their loading failed
+			return languageToRules.get(language);
 		}
 	}
 
-	// --------------------- File reading ---------------------
+	// Helper function to read the name of a regex engine inside a rules file
+	private static RegexEngines readEngine(String name) {
+		try {
+			return RegexEngines.valueOf(name);
+		} catch (IllegalArgumentException e) {
 
-	// Record to hold the data about the line that is being currently processed
-	private record LineProcessResult(String line, Matcher matcher, LanguageRule languageRule) {
+			// If the engine doesn't exist, we show an error and throw an exception to stop the reading of this current rule file
+			System.err.println("Invalid regex engine: " + name);
+			throw new RuntimeException("Invalid regex engine: " + name, e);
+		}
 	}
 
-	// Helper function to read a file line by line processing each line with the given LanguageRules
-	private static void processFileWithRules(AnalysisEntity entity, LanguageRules languageRules, ConcurrentLinkedQueue<LanguageRule> rules, Consumer<LineProcessResult> matchProcessor) {
+	// Returns the hash of a language's rules file, or an empty string if the language has no rules file
+	public static String getRulesHash(String language) {
+		return getLanguageRules(language).getRulesHash();
+	}
 
-		// We first set up the variables needed for the reading of the file:
+	// Returns the position of a rule inside its language's rules, used to store its matches outside of the analysis
+	public static int getRuleIndex(String language, LanguageRule rule) {
+		return getLanguageRules(language).getRuleIndex(rule);
+	}
 
-		// Map to keep track of the number of times a rule has been used
-		Map<LanguageRule, Integer> ruleToCount = new HashMap<>();
+	// Returns the rule of a language at the given position, or null if there isn't one
+	public static LanguageRule getRule(String language, int index) {
+		List<LanguageRule> rules = getLanguageRules(language).getRules();
+		return (index >= 0 && index < rules.size()) ? rules.get(index) : null;
+	}
 
-		// Flag to keep track of our position inside a comment or not
-		AtomicBoolean isInsideComment = new AtomicBoolean(false);
+	// --------------------- File reading ---------------------
 
-		// Current code text rule used as a flag to determine if we are in a code text or not
-		AtomicReference<CodeTextRule> currentTextLiteral = new AtomicReference<>(null);
+	// Number of code lines in each chunk of the very large files, whose lines are processed in parallel. The comments and code texts
+	// state at the chunks boundaries is already known, because the lines are stripped in a single pass while reading the file
+	private static final int CHUNK_LINES = 20000;
 
-		// We try to open the Entity's file
-		try {
-			BufferedReader br = new BufferedReader(new FileReader(entity.getPath()));
-			String line;
+	// Reads an Entity's file a single time, counting its lines and keeping only the code of the non-empty ones for the rules processing.
+	// The code lines are also split once into the token stream of the file, on which all the rules types find the lines they can match
+	public static SourceFile readSourceFile(AnalysisEntity entity) {
+		int lineCount = 0;
+		List<String> codeLines = new ArrayList<>();
 
-			// We first process the constant rules, because they are always applied, ignoring the line
-			List<LanguageRule> constantRules = rules.stream().filter(rule -> rule.constantValue() != null && rule.type() != RuleTypes.dependency).toList();
-			rules.removeAll(constantRules);
+		// We get the rules for this language: without them, there is no need to keep the code lines
+		LanguageRules languageRules = getLanguageRules(entity.getFileType());
+		boolean keepCode = !languageRules.hasNoRules();
+
+		// The stripper keeps track of the comment or code text still open at the end of each line
+		CodeStripper codeStripper = languageRules.getCodeStripper();
+		CodeStripper.State stripState = new CodeStripper.State();
+
+		// The lexer adds the tokens of each code line to the stream of the file, and the end of each line inside the stream is kept.
+		// The tokens are interned by a table of the file, so they are dropped with it
+		CodeLexer codeLexer = languageRules.getCodeLexer();
+		CodeLexer.TokenTable tokenTable = (codeLexer == null) ? null : codeLexer.newTokenTable();
+		int[] tokens = new int[keepCode ? 1024 : 0];
+		int tokensNumber = 0;
+		int[] lineEnds = new int[keepCode ? 256 : 0];
+
+		// Each region ends at its last line or at the first code line matching its end pattern, which isn't part of the region.
+		// If every line rule has a region, the code lines after the end of all of them aren't kept, since no rule can be applied there
+		int regionsCount = languageRules.getRegionsCount();
+		int[] regionEnds = new int[regionsCount];
+		Arrays.fill(regionEnds, -1);
+		Matcher[] regionMatchers = new Matcher[regionsCount];
+		for (int region = 0; region < regionsCount; region++) {
+			Pattern until = languageRules.getRegionUntil(region);
+			if (until != null) regionMatchers[region] = until.matcher("");
+		}
+		int openRegions = regionsCount;
+		boolean onlyRegionRules = languageRules.hasOnlyRegionLineRules();
 
-			for (LanguageRule constantRule : constantRules) matchProcessor.accept(new LineProcessResult("", null, constantRule));
+		// We try to open the Entity's file
+		try (BufferedReader br = new BufferedReader(new FileReader(entity.getPath()))) {
+			String line;
 
-			// Then, we iterate each line, ignoring the empty ones:
+			// We iterate each line, counting all of them but keeping only the non-empty ones
 			while ((line = br.readLine()) != null) {
-				if ((line = line.trim()).isEmpty()) continue;
+				lineCount++;
+				if (!keepCode || (onlyRegionRules && openRegions == 0) || (line = line.trim()).isEmpty()) continue;
+
+				// We close the regions whose last line has been passed
+				for (int region = 0; region < regionsCount && openRegions > 0; region++) {
+					int maxLine = languageRules.getRegionMaxLine(region);
+					if (regionEnds[region] == -1 && maxLine != -1 && lineCount > maxLine) {
+						regionEnds[region] = codeLines.size();
+						openRegions--;
+					}
+				}
 
 				// We remove comments and code text
-				line = leaveOnlyCode(line, languageRules, isInsideComment, currentTextLiteral);
+				line = codeStripper.stripLine(line, stripState);
 				if (line.isEmpty()) continue;
 
-				// We then iterate over every rule
-				for (LanguageRule rule : rules) {
-
-					// We check for the rule pattern inside the current line after replacing local variables with their actual value
-					Matcher matcher = Pattern.compile(swapWithVar(rule.pattern(), "||", entity)).matcher(line);
-					if (matcher.find()) {
-						matchProcessor.accept(new LineProcessResult(line, matcher, rule));
-
-						// After applying the rule, we increase its counter
-						int count = ruleToCount.getOrDefault(rule, 0);
-						ruleToCount.put(rule, count + 1);
-
-						// If the rule has reached its total number, we remove it from the queue and the map
-						if (rule.totalNumber() != -1 && count >= rule.totalNumber()) {
-							rules.remove(rule);
-							ruleToCount.remove(rule);
-						}
+				// We close the regions whose end pattern is found inside the code line
+				for (int region = 0; region < regionsCount && openRegions > 0; region++) {
+					if (regionEnds[region] == -1 && regionMatchers[region] != null && regionMatchers[region].reset(line).find()) {
+						regionEnds[region] = codeLines.size();
+						openRegions--;
 					}
 				}
+				if (onlyRegionRules && openRegions == 0) continue;
+
+				codeLines.add(line);
+				if (tokens.length < tokensNumber + line.length()) tokens = Arrays.copyOf(tokens, Math.max(2 * tokens.length, tokensNumber + line.length()));
+				tokensNumber = codeLexer.tokenizeLine(line, tokenTable, tokens, tokensNumber);
+				if (lineEnds.length < codeLines.size()) lineEnds = Arrays.copyOf(lineEnds, 2 * lineEnds.length);
+				lineEnds[codeLines.size() - 1] = tokensNumber;
 			}
 		} catch (IOException e) {
 			System.err.println("Error while reading " + entity.getName() + ": " + e.getMessage());
 		}
-	}
-
-
-	// Helper function to leave only code inside a line, removing comments or code text
-	private static String leaveOnlyCode(String line, LanguageRules languageRules, AtomicBoolean isInsideComment, AtomicReference<CodeTextRule> currentCodetext) {
-		if (line == null || line.isEmpty()) return "";
-
-		// We prepare the variables needed for the operations on the string:
 
-		// The final string
-		StringBuilder result = new StringBuilder();
-
-		// The current position
-		int pos = 0;
-
-		// And the original line lingth
-		int lineLength = line.length();
-
-		// We iterate for every position of the string
-		while (pos < lineLength) {
+		// The regions still open end with the file
+		for (int region = 0; region < regionsCount; region++) {
+			if (regionEnds[region] == -1) regionEnds[region] = codeLines.size();
+		}
 
-			// If we are inside a multi-line comment, we look for it's closing
-			if (isInsideComment.get()) {
-				int endPos = -1;
-				int endLength = 0;
+		int[][] tokenPieces = (tokenTable == null) ? new int[0][] : tokenTable.getTokenPieces();
+		return new SourceFile(lineCount, codeLines, Arrays.copyOf(tokens, tokensNumber), tokenPieces, Arrays.copyOf(lineEnds, codeLines.size()), regionEnds);
+	}
 
-				// We search the closest multi-line comment end
-				for (String commentEnd : languageRules.getCommentEnds()) {
-					int idx = line.indexOf(commentEnd, pos);
+	// Helper function to process the code lines of a file with the LanguageRules of the given type
+	private static void processFileWithRules(RuleProfiler ruleProfiler, AnalysisEntity entity, SourceFile sourceFile, RuleTypes type, Consumer<LineProcessResult> matchProcessor) {
+		LanguageRules languageRules = getLanguageRules(entity.getFileType());
 
-					// If we found a vailable comment end:
-					if (idx != -1 && (endPos == -1 || idx < endPos)) {
+		// We first process the constant rules, because they are always applied, ignoring the line
+		for (LanguageRule constantRule : languageRules.getConstantRules(type)) matchProcessor.accept(new LineProcessResult("", "", constantRule));
+		if (languageRules.getLineRules(type).isEmpty()) return;
 
-						// We update its position and length
-						endPos = idx;
-						endLength = commentEnd.length();
-					}
-				}
+		// Variable rules change the patterns of the following lines, so they always run in order on the whole file. The other rules don't change
+		// the Entity, so the lines of very large files are split in chunks processed in parallel by the rules pool that is reading the file
+		int linesCount = sourceFile.codeLines().size();
+		if (type == RuleTypes.variable || linesCount < 2 * CHUNK_LINES || !ForkJoinTask.inForkJoinPool()) {
+			processLines(ruleProfiler, entity, sourceFile, type, 0, linesCount, matchProcessor);
+			return;
+		}
 
-				// If we found a comment end:
-				if (endPos != -1) {
+		// Each chunk keeps its own matches, since the consumers aren't thread-safe and the results must follow the lines order
+		List<ForkJoinTask<List<LineProcessResult>>> chunks = new ArrayList<>();
+		for (int chunkStart = 0; chunkStart < linesCount; chunkStart += CHUNK_LINES) {
+			int start = chunkStart;
+			int end = Math.min(chunkStart + CHUNK_LINES, linesCount);
+			chunks.add(ForkJoinTask.adapt(() -> {
+				List<LineProcessResult> results = new ArrayList<>();
+				processLines(ruleProfiler, entity, sourceFile, type, start, end, results::add);
+				return results;
+			}));
+		}
+		ForkJoinTask.invokeAll(chunks);
+
+		// Every chunk counted the rules on its own lines only, so the total numbers are applied again while merging the chunks in order.
+		// A rule is applied at most one time more than its total number, like when the lines are processed in a single pass
+		Map<LanguageRule, Integer> ruleToCount = new IdentityHashMap<>();
+		for (ForkJoinTask<List<LineProcessResult>> chunk : chunks) {
+			for (LineProcessResult result : chunk.join()) {
+				LanguageRule rule = result.languageRule();
+				int count = ruleToCount.getOrDefault(rule, 0);
+				if (rule.totalNumber() != -1 && count > rule.totalNumber()) continue;
+
+				ruleToCount.put(rule, count + 1);
+				matchProcessor.accept(result);
+			}
+		}
+	}
 
-					// We are not in a comment anymore and jump to the end
-					isInsideComment.set(false);
-					pos = endPos + endLength;
-				} else {
+	// Helper function to process the code lines of a file between the two given positions (the end excluded) with the line rules of the given type.
+	// The rules are added to the given profile, if there is one
+	private static void processLines(RuleProfiler ruleProfiler, AnalysisEntity entity, SourceFile sourceFile, RuleTypes type, int start, int end, Consumer<LineProcessResult> matchProcessor) {
+		LanguageRules languageRules = getLanguageRules(entity.getFileType());
 
-					// Or else, we are still in a comment and can return
-					break;
+		// The rules are applied on the lines, and removed from the queue once they reach their total number
+		ConcurrentLinkedQueue<LanguageRule> rules = new ConcurrentLinkedQueue<>(languageRules.getLineRules(type));
+
+		// Map to keep track of the number of times a rule has been used. Rules are compared by identity, as every rule is a different one
+		Map<LanguageRule, Integer> ruleToCount = new IdentityHashMap<>();
+
+		// Matcher of every pattern group, with the pattern specialized on the Entity's Variables. They are reused for every line,
+		// and the ones of patterns with Variables are created again only when the Entity's Variables change
+		int patternGroupsCount = languageRules.getPatternGroupsCount();
+		LineMatcher[] groupToMatcher = new LineMatcher[patternGroupsCount];
+		int variablesCount = entity.getVariables().size();
+
+		// Rules with the same pattern share its group, so the pattern runs once per line and its caught string is used by all of them.
+		// We keep the last line on which each group has been run, and the caught string there (null if the pattern didn't match)
+		int[] groupToLine = new int[patternGroupsCount];
+		String[] groupToMatch = new String[patternGroupsCount];
+
+		// The rules patterns are first matched on the tokens of each line, so only the rules that can match are run. We stamp the pieces of the
+		// required tokens found inside the line, and keep the last line on which the tokens of each group have been matched (negative if they didn't)
+		CodeLexer codeLexer = languageRules.getCodeLexer();
+		int[] pieceToLine = (codeLexer == null) ? null : new int[codeLexer.getPiecesCount()];
+		int[] groupToTokensLine = new int[patternGroupsCount];
+		boolean hasUnfilteredRules = languageRules.hasUnfilteredRules(type);
+		List<String> codeLines = sourceFile.codeLines();
+		int[] tokens = sourceFile.tokens();
+		int[][] tokenPieces = sourceFile.tokenPieces();
+
+		// When the rules are profiled, we count the checks and matches of every rule and measure the time spent running each pattern
+		RuleProfiler.RuleStats[] ruleStats = (ruleProfiler == null) ? null : ruleProfiler.getStats(entity.getFileType(), languageRules.getRules());
+
+		// Then, we iterate each code line, until every rule has been removed from the queue
+		for (int lineNumber = start + 1; lineNumber <= end && !rules.isEmpty(); lineNumber++) {
+			String line = codeLines.get(lineNumber - 1);
+			int tokensStart = (lineNumber == 1) ? 0 : sourceFile.lineEnds()[lineNumber - 2];
+			int tokensEnd = sourceFile.lineEnds()[lineNumber - 1];
+
+			// If no required token is found and every rule has a token pattern, no rule can match the line
+			if (codeLexer != null && !codeLexer.stampLinePieces(tokenPieces, tokens, tokensStart, tokensEnd, pieceToLine, lineNumber) && !hasUnfilteredRules) continue;
+
+			// Variables are only added while reading a file, so a different count means that the Variables patterns must be swapped again
+			if (entity.getVariables().size() != variablesCount) {
+				variablesCount = entity.getVariables().size();
+				for (int group = 0; group < patternGroupsCount; group++) {
+					if (languageRules.patternGroupHasVariables(group)) groupToMatcher[group] = null;
 				}
 			}
-			// If we are inside a code text block, we look for it's closing
-			else if (currentCodetext.get() != null) {
-
-				// We search the closest code text end that isn't an end exception
-				CodeTextRule textRule = currentCodetext.get();
-				int endPos = -1;
-
-				// We scan for the remaining positions in the string
-				while (pos < lineLength) {
-					if (line.startsWith(textRule.end(), pos)) {
 
-						// For each end exception:
-						boolean isException = false;
-						for (String endExc : textRule.endExceptions()) {
-
-							// We check if the found code text end is one of the end exceptions
-							if (pos >= endExc.length() && line.startsWith(endExc, pos - endExc.length())) {
-								isException = true;
-								break;
-							}
-						}
-
-						// If we didn't find any exception that contains the end, we can jump to it
-						if (!isException) {
-							endPos = pos;
-							break;
-						}
-					}
+			// We iterate over every rule
+			for (LanguageRule rule : rules) {
 
-					pos++;
+				// Rules whose region has ended are removed from the queue, as they can't be applied on the following lines
+				int region = languageRules.getRuleRegion(rule);
+				if (region != -1 && lineNumber > sourceFile.regionEnds()[region]) {
+					rules.remove(rule);
+					continue;
 				}
 
-				if (endPos != -1) {
-
-					// If we found the end of the code text, we can remove the current code text and jump to the end of it
-					pos = endPos + textRule.end().length();
-					currentCodetext.set(null);
-				} else {
-
-					// Or else, we are still in a code text and can return
-					break;
+				// Rules whose pattern can't match the tokens of the line are skipped
+				int group = languageRules.getPatternGroup(rule);
+				if (codeLexer != null && Math.abs(groupToTokensLine[group]) != lineNumber) {
+					boolean tokensMatch = codeLexer.matchesTokenPattern(group, tokenPieces, tokens, tokensStart, tokensEnd, pieceToLine, lineNumber);
+					groupToTokensLine[group] = tokensMatch ? lineNumber : -lineNumber;
 				}
-			}
-			// We are not inside a comment or a code text, so we look for the start of one of them
-			else {
-				// First, we check for a single-line comment start, that would make all the rest of the line a comment
-				for (String singleCommentStart : languageRules.getLineComments()) if (line.indexOf(singleCommentStart, pos) != -1) return result.toString();
-
-				// If we are not in a single line of comment, we need to find the earliest multi-line comment or code text start
-				int newPos = lineLength;
-				String tempString = null;
-				CodeTextRule firstCodeTextRule = null;
-
-				// For each multi-line comment start:
-				for (String commentStart : languageRules.getCommentStarts()) {
-					int idx = line.indexOf(commentStart, pos);
-
-					// We check if it's present and the first one
-					if (idx != -1 && idx < newPos) {
-
-						// In that case, we update the temp string and new position
-						tempString = line.substring(pos, idx);
-						newPos = idx + commentStart.length();
+				if (codeLexer != null && groupToTokensLine[group] < 0) continue;
+
+				// We check for the rule pattern inside the current line after replacing local variables with their actual value,
+				// unless another rule with the same pattern has already done it on this line
+				long time = 0;
+				if (groupToLine[group] != lineNumber) {
+					LineMatcher matcher = groupToMatcher[group];
+					if (matcher == null) {
+						matcher = createLineMatcher(rule, rule.patternTemplate().apply(entity, null));
+						groupToMatcher[group] = matcher;
 					}
-				}
-
-				// For each code text start:
-				for (CodeTextRule codeTextRule : languageRules.getCodeTexts()) {
-					int idx = line.indexOf(codeTextRule.start(), pos);
-
-					// We check if it's present and the first one
-					if (idx != -1 && (idx < newPos)) {
-
-						// In that case, we update the first text rule, temp string and new position
-						firstCodeTextRule = codeTextRule;
-						tempString = line.substring(pos, idx);
-						newPos = idx + codeTextRule.start().length();
+					groupToLine[group] = lineNumber;
+					if (ruleStats == null) {
+						groupToMatch[group] = matcher.find(line);
+					} else {
+						long startTime = System.nanoTime();
+						groupToMatch[group] = matcher.find(line);
+						time = System.nanoTime() - startTime;
 					}
 				}
+				if (ruleStats != null) {
+					RuleProfiler.RuleStats stats = ruleStats[languageRules.getRuleIndex(rule)];
+					stats.addEvaluation(time, entity.getPath(), line);
+					if (groupToMatch[group] != null) stats.addMatch();
+				}
+				if (groupToMatch[group] != null) {
+					matchProcessor.accept(new LineProcessResult(line, groupToMatch[group], rule));
 
-				// If the temp string is null, we didn't find any starts
-				if (tempString == null) {
-
-					// So, we can add the rest of the string and return
-					result.append(line.substring(pos));
-					break;
-				} else {
-
-					// If we found a start, we add to the result only the part before it and jump to it
-					result.append(tempString);
-					pos = newPos;
+					// After applying the rule, we increase its counter
+					int count = ruleToCount.getOrDefault(rule, 0);
+					ruleToCount.put(rule, count + 1);
 
-					// Depending on if it was a comment or a code text, we update the flags accordingly
-					if (firstCodeTextRule == null) {
-						isInsideComment.set(true);
-					} else {
-						currentCodetext.set(firstCodeTextRule);
+					// If the rule has reached its total number, we remove it from the queue and the map
+					if (rule.totalNumber() != -1 && count >= rule.totalNumber()) {
+						rules.remove(rule);
+						ruleToCount.remove(rule);
 					}
 				}
 			}
 		}
-
-		return result.toString();
 	}
 
+
 	// --------------------- Public functions ---------------------
 
-	// Fills an Entity Variables by reading its file and applying its language's rules
-	public static void fillVariables(AnalysisEntity entity) {
+	// Fills an Entity Variables by applying its language's rules on the code lines of its file
+	public static void fillVariables(AnalysisContext context, AnalysisEntity entity, SourceFile sourceFile) {
 
 		// We get the rules for this language and return if there aren't any
 		LanguageRules languageRules = getLanguageRules(entity.getFileType());
 		if (languageRules.hasNoRules()) return;
 
-		// We keep only variable-type rules
-		ConcurrentLinkedQueue<LanguageRule> variableRules = languageRules.getRules().stream().filter(rule -> rule.type() == RuleTypes.variable).collect(Collectors.toCollection(ConcurrentLinkedQueue::new));
-		if (variableRules.isEmpty()) return;
+		// We check that there are variable-type rules
+		if (languageRules.getRules(RuleTypes.variable).isEmpty()) return;
 
 		// Using the file process function, we get only the rules that can be applied
-		processFileWithRules(entity, languageRules, variableRules, (lineProcessResult) -> {
+		processFileWithRules(context.getActiveRuleProfiler(), entity, sourceFile, RuleTypes.variable, (lineProcessResult) -> {
 
 			// We check the rule for its constant value, so we know if It's constant or not
-			String constantValue = lineProcessResult.languageRule.constantValue();
+			RuleValue constantValue = lineProcessResult.languageRule().value();
 			if (constantValue != null) {
 
 				// We get ready to compute the final value to assign to the Variable
 				String finalValue;
-				String[] tokens = constantValue.split("\\s");
 
 				// We will swap only the local values (|| and not !!) because in the Variable filling we only have the local ones, no other file is being processed
 
-				if ((constantValue.startsWith("\"") && constantValue.endsWith("\"")) || tokens.length == 1) {
+				if (constantValue.single()) {
 
-					// If the value is a single word, we can use the helper function to get its value
-					finalValue = swapWithVar(constantValue, "||", entity);
-					entity.addVariable(new Variable(lineProcessResult.languageRule.name(), finalValue, lineProcessResult.languageRule.hidden()));
-				} else if (tokens.length == 3) {
+					// If the value is a single word, we can use its template to get its value
+					finalValue = constantValue.template().apply(entity, null);
+					entity.addVariable(new Variable(lineProcessResult.languageRule().name(), finalValue, lineProcessResult.languageRule().hidden()));
+				} else if (constantValue.operation() != null) {
 
 					// If the value has three words, they must be two values and an operation. We start by getting the two values
-					String firstVar = swapWithVar(tokens[0], "||", entity);
-					String secondVar = swapWithVar(tokens[2], "||", entity);
+					String firstVar = constantValue.firstOperand().apply(entity, null);
+					String secondVar = constantValue.secondOperand().apply(entity, null);
 
 					// Then, we can execute the operation
-					finalValue = switch (tokens[1]) {
+					finalValue = switch (constantValue.operation()) {
 						case "-" -> firstVar.replace(secondVar, "");
 						case "+" -> firstVar + secondVar;
 						default -> null;
 					};
 
 					// Finally, we can assign the new variable
-					if (finalValue != null) entity.addVariable(new Variable(lineProcessResult.languageRule.name(), finalValue, lineProcessResult.languageRule.hidden()));
+					if (finalValue != null) entity.addVariable(new Variable(lineProcessResult.languageRule().name(), finalValue, lineProcessResult.languageRule().hidden()));
 
 					// If the constant rule has the debug flag, we print the result
-					if (lineProcessResult.languageRule.debug()) System.out.println("Applied " + entity.getFileType() + " constant Variable " + lineProcessResult.languageRule.name() + " of value: " + finalValue);
+					if (lineProcessResult.languageRule().debug()) System.out.println("Applied " + entity.getFileType() + " constant Variable " + lineProcessResult.languageRule().name() + " of value: " + finalValue);
 				}
 			} else {
 				// If a Variable is not constant, we can use the helper function to get the matching string
-				String matchGroup = getMatchingString(lineProcessResult.matcher());
+				String matchGroup = lineProcessResult.match();
 
 				// If the rule has the debug flag, we print the line that has been found
-				if (lineProcessResult.languageRule.debug())
-					System.out.println("Applied " + entity.getFileType() + " Variable " + lineProcessResult.languageRule.name() + " on: \"" + lineProcessResult.line + "\" with result: " + matchGroup);
+				if (lineProcessResult.languageRule().debug())
+					System.out.println("Applied " + entity.getFileType() + " Variable " + lineProcessResult.languageRule().name() + " on: \"" + lineProcessResult.line() + "\" with result: " + matchGroup);
 
 
 				// Finally, we can assign the new variable
-				entity.addVariable(new Variable(lineProcessResult.languageRule.name(), matchGroup, lineProcessResult.languageRule.hidden()));
+				entity.addVariable(new Variable(lineProcessResult.languageRule().name(), matchGroup, lineProcessResult.languageRule().hidden()));
 			}
 		});
 	}
 
 
-	// Reads an Entity Identifiers by reading its file and applying its language's rules
-	public static List<Identifier> readIdentifiers(AnalysisEntity entity) {
+	// Reads an Entity Identifiers by applying its language's rules on the code lines of its file
+	public static List<Identifier> readIdentifiers(AnalysisContext context, AnalysisEntity entity, SourceFile sourceFile) {
 		List<Identifier> identifiers = new ArrayList<>();
 
 		// We get the rules for this language and return if there aren't any
 		LanguageRules lr = getLanguageRules(entity.getFileType());
 		if (lr.hasNoRules()) return identifiers;
 
-		// We keep only identifier-type rules
-		ConcurrentLinkedQueue<LanguageRule> identifierRules = lr.getRules().stream().filter(rule -> rule.type() == RuleTypes.identifier).collect(Collectors.toCollection(ConcurrentLinkedQueue::new));
-		if (identifierRules.isEmpty()) return identifiers;
+		// We check that there are identifier-type rules
+		if (lr.getRules(RuleTypes.identifier).isEmpty()) return identifiers;
 
 		// Using the file process function, we get only the rules that can be applied
-		processFileWithRules(entity, lr, identifierRules, (lineProcessResult) -> {
+		processFileWithRules(context.getActiveRuleProfiler(), entity, sourceFile, RuleTypes.identifier, (lineProcessResult) -> {
 
 			// We check the rule for its constant value, so we know if It's constant or not
-			if (lineProcessResult.languageRule.constantValue() != null) {
+			if (lineProcessResult.languageRule().constantValue() != null) {
 
 				// We don't need to account for operations inside an Identifier value
-				String finalValue = swapWithVar(lineProcessResult.languageRule.constantValue(), "||", entity);
+				String finalValue = lineProcessResult.languageRule().value().template().apply(entity, null);
 
 				// So, we can just assign its value to the new Identifier
-				identifiers.add(new Identifier(finalValue, lineProcessResult.languageRule.name(), 0, lineProcessResult.languageRule.hidden()));
+				identifiers.add(new Identifier(finalValue, lineProcessResult.languageRule().name(), 0, lineProcessResult.languageRule().hidden(), getQualifiedName(lineProcessResult.languageRule(), entity, finalValue)));
 
 				// If the constant rule has the debug flag, we print the result
-				if (lineProcessResult.languageRule.debug()) System.out.println("Applied " + entity.getFileType() + " constant Identifier " + lineProcessResult.languageRule.name() + " of value: " + finalValue);
+				if (lineProcessResult.languageRule().debug()) System.out.println("Applied " + entity.getFileType() + " constant Identifier " + lineProcessResult.languageRule().name() + " of value: " + finalValue);
 			} else {
 				// If an Identifier is not constant, we can use the helper function to get the matching string
-				String matchGroup = getMatchingString(lineProcessResult.matcher());
+				String matchGroup = lineProcessResult.match();
 
 				// There can be multiple identifiers in a single line, so we split and iterate on them
 				String[] tokens = matchGroup.split("\\s*,\\s*");
@@ -565,11 +710,12 @@ public class CodeReader {
 					if ((token = token.trim()).isEmpty()) continue;
 
 					// If the rule has the debug flag, we print the line that has been found
-					if (lineProcessResult.languageRule.debug())
-						System.out.println("Applied " + entity.getFileType() + " Identifier " + lineProcessResult.languageRule.name() + " on: \"" + lineProcessResult.line + "\" with result: " + matchGroup);
+					if (lineProcessResult.languageRule().debug())
+						System.out.println("Applied " + entity.getFileType() + " Identifier " + lineProcessResult.languageRule().name() + " on: \"" + lineProcessResult.line() + "\" with result: " + matchGroup);
 
 					// Finally, we can swap the Variables values insithe the token and create a new Identifier from it
-					identifiers.add(new Identifier(swapWithVar(token, "||", entity), lineProcessResult.languageRule.name(), 0, lineProcessResult.languageRule.hidden()));
+					String name = RuleTemplate.swap(token, entity);
+					identifiers.add(new Identifier(name, lineProcessResult.languageRule().name(), 0, lineProcessResult.languageRule().hidden(), getQualifiedName(lineProcessResult.languageRule(), entity, name)));
 				}
 			}
 		});
@@ -578,8 +724,27 @@ public class CodeReader {
 	}
 
 
-	// Finds an Entity Dependencies by reading its file and applying its language's rules
-	public static List<FileDependency> findDependencies(AnalysisEntity entity, String language) {
+	// Reads the matches of an Entity's dependency rules on the code lines of its file. They are resolved later by findDependencies,
+	// once the Identifiers of all files are known
+	public static List<LineProcessResult> readDependencyMatches(AnalysisContext context, AnalysisEntity entity, SourceFile sourceFile) {
+		List<LineProcessResult> dependencyMatches = new ArrayList<>();
+
+		// We get the rules for this language and return if there aren't any
+		LanguageRules languageRules = getLanguageRules(entity.getFileType());
+		if (languageRules.hasNoRules()) return dependencyMatches;
+
+		// We check that there are dependency-type rules
+		if (languageRules.getRules(RuleTypes.dependency).isEmpty()) return dependencyMatches;
+
+		// Using the file process function, we store the matches in the order they have been found
+		processFileWithRules(context.getActiveRuleProfiler(), entity, sourceFile, RuleTypes.dependency, dependencyMatches::add);
+
+		return dependencyMatches;
+	}
+
+
+	// Finds an Entity Dependencies by resolving the matches of its language's dependency rules against the Identifiers of its analysis
+	public static List<FileDependency> findDependencies(AnalysisContext context, AnalysisEntity entity, String language, List<LineProcessResult> dependencyMatches) {
 		List<FileDependency> fileDependencies = new ArrayList<>();
 		// Map to avoid iterating the fileDependencies list to find the same target entity
 		Map<AnalysisEntity, FileDependency> entityToFileDependency = new HashMap<>();
@@ -588,60 +753,72 @@ public class CodeReader {
 		LanguageRules languageRules = getLanguageRules(language);
 		if (languageRules.hasNoRules()) return fileDependencies;
 
-		// We keep only dependency-type rules
-		ConcurrentLinkedQueue<LanguageRule> dependencyRules = languageRules.getRules().stream().filter(rule -> rule.type() == RuleTypes.dependency).collect(Collectors.toCollection(ConcurrentLinkedQueue::new));
-		if (dependencyRules.isEmpty()) return fileDependencies;
+		// We will need a list of all Identifiers and a set to keep track of the rules already applied by the Entity (to use them as conditions for other rules)
+		Set<Identifier> allIdentifiers = context.getAllIdentifiers();
+		AppliedRuleSet appliedRules = new AppliedRuleSet();
 
-		// We will need a list of all Identifiers and a map to keep track of the already applied rules (to use them as conditions for other rules)
-		Set<Identifier> allIdentifiers = DirectoryAnalyzer.identifierToEntity.keySet();
-		Map<AnalysisEntity, List<String>> entityToAppliedRulesNames = new HashMap<>();
+		// The failed conditions are added to the profile of the analysis, if it's still being collected
+		RuleProfiler ruleProfiler = context.getActiveRuleProfiler();
 
-		// Using the file process function, we get only the rules that can be applied
-		processFileWithRules(entity, languageRules, dependencyRules, (lineProcessResult) -> {
+		// We resolve the rule matches in the same order they have been found inside the file
+		for (LineProcessResult lineProcessResult : dependencyMatches) {
 			LanguageRule rule = lineProcessResult.languageRule();
+			int ruleNameId = languageRules.getRuleNameId(rule.name());
 			AnalysisEntity targetEntity;
 
 			// We check the rule for its constant value, so we know if It's constant or not
 			if (rule.constantValue() == null) {
-				String matchGroup = getMatchingString(lineProcessResult.matcher());
+				String matchGroup = lineProcessResult.match();
+
+				// Rules declaring a qualified name catch it from the line, so the only Identifiers it can refer to are found with a single lookup
+				List<Identifier> qualifiedIdentifiers = null;
+				if (rule.qualifiedTemplate() != null) {
+					String qualifiedName = getStringValue(rule.qualifiedTemplate(), entity, null, lineProcessResult);
+					qualifiedIdentifiers = (qualifiedName == null) ? null : context.getQualifiedIdentifiers(qualifiedName);
+				}
 
 				// There can be multiple Dependencies in a single line, so we split and iterate on them
 				String[] tokens = matchGroup.split("\\s*,\\s*");
 				for (String dependencyName : tokens) {
 					if ((dependencyName = dependencyName.trim()).isEmpty()) continue;
 
-					// For each identifier with the same name, we check for a different Entity than the current one (can't depend on itself)
-					List<Identifier> sameNameIdentifiers = DirectoryAnalyzer.nameToIdentifiers.get(dependencyName);
+					// For each identifier with the same name, we check for a different Entity than the current one (can't depend on itself).
+					// With a qualified name, the only candidates are its Identifiers, if they have the same name
+					List<Identifier> sameNameIdentifiers = context.getIdentifiers(dependencyName);
+					if (rule.qualifiedTemplate() != null) {
+						if (qualifiedIdentifiers == null || !qualifiedIdentifiers.getFirst().name().equals(dependencyName)) continue;
+						sameNameIdentifiers = qualifiedIdentifiers;
+					}
 					if (sameNameIdentifiers == null) continue;
 					for (Identifier identifier : sameNameIdentifiers) {
 						if (entity.hasIdentifier(identifier)) continue;
 
 						// We find the other Entity that could be a Dependency to this one
-						targetEntity = DirectoryAnalyzer.identifierToEntity.get(identifier);
+						targetEntity = context.getEntity(identifier);
 
-						// For now, Entities with different programming languages will be ignored
-						if (!entity.getFileType().equals(targetEntity.getFileType())) continue;
+						// For now, Entities with different programming languages will be ignored. The Entity can also be missing if it has just been removed
+						if (targetEntity == null || !entity.getFileType().equals(targetEntity.getFileType())) continue;
 
 						// We use the helper function to check if the rule's conditions are satisfied
-						if (failedRule(lineProcessResult, entity, targetEntity, entityToAppliedRulesNames)) continue;
+						if (failedRule(ruleProfiler, lineProcessResult, entity, targetEntity, appliedRules)) continue;
 
 						// We add the used rule to the applied ones
-						entityToAppliedRulesNames.computeIfAbsent(entity, k -> new ArrayList<>()).add(rule.name() + targetEntity.getPath());
+						appliedRules.add(ruleNameId, targetEntity.getId());
 
 						// If the rule has the debug flag, we print the line and value that have been found
-						if (lineProcessResult.languageRule.debug())
-							System.out.println("Applied " + entity.getFileType() + " Dependency " + lineProcessResult.languageRule.name() + " on: \"" + lineProcessResult.line + "\" with result: " + matchGroup);
+						if (lineProcessResult.languageRule().debug())
+							System.out.println("Applied " + entity.getFileType() + " Dependency " + lineProcessResult.languageRule().name() + " on: \"" + lineProcessResult.line() + "\" with result: " + matchGroup);
 
 						// If a FileDependency between these two Entities already exists, we add the newly found Dependency to it using the map
 						FileDependency fileDependency = entityToFileDependency.get(targetEntity);
 						if (fileDependency == null) {
 							// If there were not already a FileDependency between these two Entities, we create a new one
-							fileDependency = new FileDependency(targetEntity, new ArrayList<>(List.of(new Dependency(identifier, rule.name(), lineProcessResult.languageRule.hidden()))));
+							fileDependency = new FileDependency(targetEntity, new ArrayList<>(List.of(new Dependency(identifier, rule.name(), lineProcessResult.languageRule().hidden()))));
 
 							entityToFileDependency.put(targetEntity, fileDependency);
 							fileDependencies.add(fileDependency);
 						} else {
-							fileDependency.addUniqueDependency(new Dependency(identifier, rule.name(), lineProcessResult.languageRule.hidden()));
+							fileDependency.addUniqueDependency(new Dependency(identifier, rule.name(), lineProcessResult.languageRule().hidden()));
 						}
 
 						// Finally, we finish the search
@@ -650,49 +827,68 @@ public class CodeReader {
 				}
 
 			} else {
-				// Dependencies that have a constant value will be searched through all Identifiers only checking conditions and not their Idenitifer name
-				for (Identifier identifier : allIdentifiers) {
+				// Dependencies that have a constant value will be searched through all Identifiers only checking conditions and not their Idenitifer name.
+				// If a condition requires a target Variable to have a known value, only the Identifiers of the Entities with that value are searched
+				Collection<Identifier> candidateIdentifiers = allIdentifiers;
+				Set<AnalysisEntity> candidateEntities = getIndexedCandidates(context, lineProcessResult, entity);
+				if (candidateEntities != null) {
+					candidateIdentifiers = new ArrayList<>();
+					for (AnalysisEntity candidateEntity : candidateEntities) candidateIdentifiers.addAll(candidateEntity.getIdentifiers());
+				}
+
+				for (Identifier identifier : candidateIdentifiers) {
 
 					// We find the other Entity that could be a Dependency to this one
-					targetEntity = DirectoryAnalyzer.identifierToEntity.get(identifier);
+					targetEntity = context.getEntity(identifier);
 
-					// For now, Entities with different programming languages will be ignored
-					if (!entity.getFileType().equals(targetEntity.getFileType())) continue;
+					// For now, Entities with different programming languages will be ignored. The Entity can also be missing if it has just been removed
+					if (targetEntity == null || !entity.getFileType().equals(targetEntity.getFileType())) continue;
 
 					// We use the helper function to check if the rule's conditions are satisfied
-					if (failedRule(lineProcessResult, entity, targetEntity, entityToAppliedRulesNames)) continue;
+					if (failedRule(ruleProfiler, lineProcessResult, entity, targetEntity, appliedRules)) continue;
 
 					// We add the used rule to the applied ones
-					entityToAppliedRulesNames.computeIfAbsent(entity, k -> new ArrayList<>()).add(rule.name() + targetEntity.getPath());
+					appliedRules.add(ruleNameId, targetEntity.getId());
 
 
 					// If the rule has the debug flag, we print the line that has been found
-					if (lineProcessResult.languageRule.debug())
-						System.out.println("Applied " + entity.getFileType() + " Dependency " + lineProcessResult.languageRule.name() + " on: \"" + lineProcessResult.line + "\" with result: " + identifier.name());
+					if (lineProcessResult.languageRule().debug())
+						System.out.println("Applied " + entity.getFileType() + " Dependency " + lineProcessResult.languageRule().name() + " on: \"" + lineProcessResult.line() + "\" with result: " + identifier.name());
 
 					// If a FileDependency between these two Entities already exists, we add the newly found Dependency to it using the map
 					FileDependency fileDependency = entityToFileDependency.get(targetEntity);
 					if (fileDependency == null) {
 						// If there were not already a FileDependency between these two Entities, we create a new one
-						fileDependency = new FileDependency(targetEntity, new ArrayList<>(List.of(new Dependency(identifier, rule.name(), lineProcessResult.languageRule.hidden()))));
+						fileDependency = new FileDependency(targetEntity, new ArrayList<>(List.of(new Dependency(identifier, rule.name(), lineProcessResult.languageRule().hidden()))));
 
 						entityToFileDependency.put(targetEntity, fileDependency);
 						fileDependencies.add(fileDependency);
 					} else {
 						// We only apply a constant Dependency once for FileDependency, so we check if it has a unique rule
-						fileDependency.addUniqueRuleDependency(new Dependency(identifier, rule.name(), lineProcessResult.languageRule.hidden()));
+						fileDependency.addUniqueRuleDependency(new Dependency(identifier, rule.name(), lineProcessResult.languageRule().hidden()));
 					}
 
 					// For constant Dependencies, we don't finish the search after only one find because all Identifiers must be searched
 				}
 			}
-		});
+		}
 
 		return fileDependencies;
 	}
 
 	// --------------------- Helpers for public functions ---------------------
 
+	// Helper function to create the matcher of a rule pattern with its regex engine. Patterns that the linear engine can't compile use java.util.regex
+	private static LineMatcher createLineMatcher(LanguageRule rule, String pattern) {
+		if (rule.engine() == RegexEngines.linear) {
+			LinearRegex linearRegex = PatternCache.compileLinear(pattern);
+			if (linearRegex != null) return linearRegex.matcher();
+		}
+
+		Matcher matcher = PatternCache.compile(pattern).matcher("");
+		return line -> matcher.reset(line).find() ? getMatchingString(matcher) : null;
+	}
+
 	// Helper function to safely get the matching string in the given Matcher
 	private static String getMatchingString(Matcher matcher) {
 		if (matcher.groupCount() < 1) {
@@ -716,81 +912,62 @@ public class CodeReader {
 	}
 
 
-	// Helper function to swap variable markers (such as "||VARIABLE||") with their string value
-	private static String swapWithVar(String string, String margins, AnalysisEntity entity) {
-		StringBuilder resultLine = new StringBuilder();
-
-		// We iterate on the string to find the given margins
-		int index = 0;
-		while (index < string.length()) {
-
-			// We search for the starting margins
-			int start = string.indexOf(margins, index);
-			if (start == -1) {
-
-				// If we found nothing, we can append the rest of the tring and return
-				resultLine.append(string.substring(index));
-				break;
-			}
+	// Helper function to get the qualified name of an Identifier found by a rule, or null if the rule doesn't declare it.
+	// The qualified name is the declared prefix, with the Entity's Variables swapped, followed by the Identifier name
+	private static String getQualifiedName(LanguageRule rule, AnalysisEntity entity, String name) {
+		if (rule.qualifiedTemplate() == null) return null;
+		return rule.qualifiedTemplate().apply(entity, null) + name;
+	}
 
-			// If we found a margin, we add the text before it to the result
-			resultLine.append(string, index, start);
+	// Helper function to find the only Entities that can satisfy the conditions of a constant dependency rule, using the Variables index of the analysis.
+	// Returns null if no condition can be resolved through the index, so all Identifiers must be checked
+	private static Set<AnalysisEntity> getIndexedCandidates(AnalysisContext context, LineProcessResult lineProcessResult, AnalysisEntity entity) {
+		for (RuleCondition condition : lineProcessResult.languageRule().parsedConditions()) {
+			switch (condition) {
+				case RuleCondition.ComparisonCondition(RuleTemplate first, String operation, RuleTemplate second, boolean inverted) when operation.equals("==") && !inverted -> {
+
+					// The condition must compare a target Variable with a value that doesn't depend on the target Entity
+					String targetVariable = first.getTargetVariable();
+					RuleTemplate other = second;
+					if (targetVariable == null) {
+						targetVariable = second.getTargetVariable();
+						other = first;
+					}
+					if (targetVariable == null || other.hasTargetVariables()) continue;
 
-			// We search for the ending margins
-			int end = string.indexOf(margins, start + margins.length());
-			if (end == -1) {
+					// Missing target Variables are swapped with an empty string, so empty values can't be found through the index
+					String value = getStringValue(other, entity, null, lineProcessResult);
+					if (value == null) return Set.of();
+					if (value.isEmpty()) continue;
 
-				// If we found nothing, we can append the rest of the tring and return
-				resultLine.append(string.substring(index));
-				break;
-			}
+					return context.getEntitiesWithVariable(targetVariable, value);
+				}
+				case RuleCondition.NameCondition(String name, String appliedRule, boolean _, RuleTemplate pattern, boolean inverted) when appliedRule == null && pattern == null && !inverted -> {
 
-			// Now that we found both margins, we can read the variable name
-			String variableName = string.substring(start + margins.length(), end);
-
-			// Now that we have the variable name, we swap its value accordingly. First we check for global variables, then for Entity's Variables
-			if (variableName.equals("NAMEOFFILE")) {
-				resultLine.append(entity.getName());
-			} else if (variableName.equals("NAMEOFFILEONLY")) {
-				resultLine.append(entity.getNameOnly());
-			} else if (variableName.equals("PATHOFFILE")) {
-				resultLine.append(entity.getPath().replace(File.separatorChar, '/'));
-			} else if (variableName.equals("PATHOFFILEONLY")) {
-				String resultString = entity.getPath().substring(0, entity.getPath().length() - entity.getExtension().length() - 1);
-				resultLine.append(resultString.replace(File.separatorChar, '/'));
-			} else if (variableName.equals("NAMEOFDIRECTORY")) {
-				String temp = entity.getPath().replace(entity.getName(), "");
-				temp = temp.substring(0, temp.length() - 1);
-				resultLine.append(temp.substring(temp.lastIndexOf(File.separatorChar) + 1));
-			} else if (variableName.equals("PATHOFDIRECTORY")) {
-				resultLine.append(entity.getPath().replace(File.separator + entity.getName(), ""));
-			}
-			// If the variable is not global, we search its value from the Entity's Variables
-			else if (entity.getVariablesMap().containsKey(variableName)) {
-				resultLine.append(entity.getVariablesMap().get(variableName));
+					// A Variable name is satisfied only by the Entities with the same value of the Entity's Variable
+					if (RuleTemplate.GLOBAL_VARIABLES.contains(name)) continue;
+					String value = entity.getVariableValue(name);
+					return (value == null) ? Set.of() : context.getEntitiesWithVariable(name, value);
+				}
+				default -> {
+				}
 			}
-
-			// We jump to the end of the current Variable's margins, so we can try to find another one
-			index = end + margins.length();
 		}
 
-		return resultLine.toString();
+		return null;
 	}
 
-	// Hepler function to get the actual value of the string, swapping Variables and applying Patterns
-	private static String getStringValue(String string, AnalysisEntity entity, AnalysisEntity targetEntity, LineProcessResult lineProcessResult) {
+	// Hepler function to get the actual value of a condition operand, swapping Variables and applying Patterns
+	private static String getStringValue(RuleTemplate operand, AnalysisEntity entity, AnalysisEntity targetEntity, LineProcessResult lineProcessResult) {
 
 		// First, we swap the Variables with their respective values, using the current Entity for each ("||" is local and "!!" is for the target)
-		string = swapWithVar(string, "||", entity);
-		string = swapWithVar(string, "!!", targetEntity);
-
-		// If the string is a Pattern:
-		if (string.startsWith("\"") && string.endsWith("\"")) {
-			string = string.substring(1, string.length() - 1);
+		String string = operand.apply(entity, targetEntity);
 
+		// If the operand is a Pattern:
+		if (operand.pattern()) {
 			try {
 				// We try to compile it and search for its caught string
-				Matcher matcher = Pattern.compile(string).matcher(lineProcessResult.line);
+				Matcher matcher = PatternCache.compile(string).matcher(lineProcessResult.line());
 				if (matcher.find()) return matcher.group(1);
 			} catch (PatternSyntaxException _) {
 			}
@@ -801,19 +978,23 @@ public class CodeReader {
 	}
 
 
-	// Helper function to check if a rule fails to satisfy its conditions
-	private static boolean failedRule(LineProcessResult lineProcessResult, AnalysisEntity entity, AnalysisEntity targetEntity, Map<AnalysisEntity, List<String>> entityToAppliedRules) {
+	// Helper function to check if a rule fails to satisfy its conditions, adding the failure to the given profile if there is one
+	private static boolean failedRule(RuleProfiler ruleProfiler, LineProcessResult lineProcessResult, AnalysisEntity entity, AnalysisEntity targetEntity, AppliedRuleSet appliedRules) {
 		LanguageRule rule = lineProcessResult.languageRule();
 
-		// If there are no conditions, then the rule succeds
-		if (rule.conditions() == null || rule.conditions().isEmpty()) return false;
-
-		// For each condition, we check if it's satisfied. Multiple conditions inside a rule always act as an AND
-		for (String condition : rule.conditions()) {
-			if (!respectedCondition(condition, lineProcessResult, entity, targetEntity, entityToAppliedRules)) {
+		// For each condition, we check if it's satisfied. Multiple conditions inside a rule always act as an AND. If there are no conditions, then the rule succeds
+		List<RuleCondition> conditions = rule.parsedConditions();
+		for (int i = 0; i < conditions.size(); i++) {
+			if (!respectedCondition(conditions.get(i), lineProcessResult, entity, targetEntity, appliedRules)) {
 
 				// If the rule has the debug flag, we print the failure of the condition
-				if (rule.debug()) System.out.println("Failed condition: " + condition + " for rule " + rule.name() + " on line: " + lineProcessResult.line);
+				if (rule.debug()) System.out.println("Failed condition: " + rule.conditions().get(i) + " for rule " + rule.name() + " on line: " + lineProcessResult.line());
+
+				// When the rules are profiled, we count the failure
+				if (ruleProfiler != null) {
+					LanguageRules languageRules = getLanguageRules(entity.getFileType());
+					ruleProfiler.getStats(entity.getFileType(), languageRules.getRules())[languageRules.getRuleIndex(rule)].addConditionFailure();
+				}
 
 				return true;
 			}
@@ -824,95 +1005,67 @@ public class CodeReader {
 	}
 
 	// Helper function to check if a single condition is satisfied
-	private static boolean respectedCondition(String condition, LineProcessResult lineProcessResult, AnalysisEntity entity, AnalysisEntity targetEntity, Map<AnalysisEntity, List<String>> entityToAppliedRules) {
-
-		// First, we split the conditions in its different parts
-		String[] tokens = condition.split(" ");
-
-		// If the first word is "not", the condition will be inverted
-		boolean inverted = tokens[0].equals("not");
-		if (inverted) {
-
-			// If we found the "not" token, we remove it from the array containing the other words
-			String[] tempTokens = new String[tokens.length - 1];
-			System.arraycopy(tokens, 1, tempTokens, 0, tempTokens.length);
-			tokens = tempTokens;
-		}
-
-		// For the next checks, we will need the Entity's variables
-		Map<String, String> variablesMap = entity.getVariablesMap();
-
-		if (tokens.length == 2) {
-
-			// For two-words conditions, there should be an expression and a Variable. We start by swapping the Variable's value
-			tokens[1] = getStringValue(tokens[1], entity, targetEntity, lineProcessResult);
-
-			// Then, we apply the expression
-			switch (tokens[0]) {
-				case "==":
-					return inverted ^ variablesMap.get(tokens[1]).equals(targetEntity.getVariablesMap().get(tokens[1]));
-				case "contains":
-					return inverted ^ variablesMap.get(tokens[1]).contains(targetEntity.getVariablesMap().get(tokens[1]));
+	private static boolean respectedCondition(RuleCondition condition, LineProcessResult lineProcessResult, AnalysisEntity entity, AnalysisEntity targetEntity, AppliedRuleSet appliedRules) {
+		switch (condition) {
+			case RuleCondition.VariableCondition(String operation, RuleTemplate variable, boolean inverted) -> {
+
+				// For two-words conditions, there should be an expression and a Variable. We start by swapping the Variable's name
+				String variableName = getStringValue(variable, entity, targetEntity, lineProcessResult);
+				String value = entity.getVariableValue(variableName);
+				String targetValue = targetEntity.getVariableValue(variableName);
+
+				// Then, we apply the expression. A Variable missing from one of the Entities doesn't satisfy it
+				if (value == null || targetValue == null) return false;
+				return inverted ^ switch (operation) {
+					case "==" -> value.equals(targetValue);
+					default -> value.contains(targetValue);
+				};
 			}
-		} else if (tokens.length == 3) {
-
-			// For three-words conditions, there should be two Variables and an expression in the middle. We start by swapping the Variables values
-			String target1 = getStringValue(tokens[0], entity, targetEntity, lineProcessResult);
-			String target2 = getStringValue(tokens[2], entity, targetEntity, lineProcessResult);
-
-			// Then, we apply the expression
-			switch (tokens[1]) {
-				case "==":
-					return inverted ^ target1.equals(target2);
-				case "contains":
-					return inverted ^ target1.contains(target2);
-				case "startswith":
-					return inverted ^ target1.startsWith(target2);
-				case "endswith":
-					return inverted ^ target1.endsWith(target2);
+			case RuleCondition.ComparisonCondition(RuleTemplate first, String operation, RuleTemplate second, boolean inverted) -> {
+
+				// For three-words conditions, there should be two Variables and an expression in the middle. We start by swapping the Variables values
+				String target1 = getStringValue(first, entity, targetEntity, lineProcessResult);
+				String target2 = getStringValue(second, entity, targetEntity, lineProcessResult);
+
+				// Then, we apply the expression
+				return inverted ^ switch (operation) {
+					case "==" -> target1.equals(target2);
+					case "contains" -> target1.contains(target2);
+					case "startswith" -> target1.startsWith(target2);
+					default -> target1.endsWith(target2);
+				};
 			}
-		}
-		// For one-word conditions, there should be only one Variable or rule name. They can contain spaces, so we don't check for the length of the tokens
-
-		// First, we check for a common equal Variable
-		if (variablesMap.containsKey(condition)) return inverted ^ variablesMap.get(condition).equals(targetEntity.getVariablesMap().get(condition));
-
-		// Then, we check for a rule name
-		List<String> appliedLanguageRules = null;
-		String newCondition = null;
-		String entityPath = null;
-
-		if (condition.startsWith("||") && condition.endsWith("||")) {
-
-			// If the condition is local, we extract its name and store the Entity's applied rules and the target Entity's path
-			newCondition = condition.substring(2, condition.length() - 2);
-			entityPath = targetEntity.getPath();
-			appliedLanguageRules = entityToAppliedRules.get(entity);
-		} else if (condition.startsWith("!!") && condition.endsWith("!!")) {
-
-			// If the condition is on the target, we extract its name and store the applied rules for the target and the Entity's path
-			newCondition = condition.substring(2, condition.length() - 2);
-			entityPath = entity.getPath();
-			appliedLanguageRules = entityToAppliedRules.get(targetEntity);
-		}
+			case RuleCondition.NameCondition(String name, String appliedRule, boolean onTarget, RuleTemplate pattern, boolean inverted) -> {
+				// For one-word conditions, there should be only one Variable or rule name
+
+				// First, we check for a common equal Variable
+				String value = entity.getVariableValue(name);
+				if (value != null) return inverted ^ value.equals(targetEntity.getVariableValue(name));
+
+				// Then, we check if a rule between those two entities has been already applied. Local rules are applied by the Entity on the target,
+				// while the target ones are applied by the target Entity on the Entity. Only the rules applied by the Entity whose Dependencies
+				// are being found are known, so the target ones can be found only when the target Entity is the Entity itself
+				if (appliedRule != null) {
+					AnalysisEntity applyingEntity = onTarget ? targetEntity : entity;
+					AnalysisEntity appliedEntity = onTarget ? entity : targetEntity;
+					if (applyingEntity == entity && appliedRules.contains(getLanguageRules(entity.getFileType()).getRuleNameId(appliedRule), appliedEntity.getId())) return !inverted;
+				}
 
-		// Finally, we can check if a rule between those two entities has been already applied
-		if (appliedLanguageRules != null && appliedLanguageRules.contains(newCondition + entityPath)) return !inverted;
+				// If none of the previous checks has been satisfied, we try to use the condition as a Pattern
+				if (pattern != null) {
 
-		// If none of the previous checks has been satisfied, we try to use the condition as a Pattern
-		if (condition.startsWith("\"") && condition.endsWith("\"")) {
-			condition = condition.substring(1, condition.length() - 1);
+					// We get the actual string value and try to compile the Pattern. If it's valid, we return the boolean match
+					try {
+						Matcher matcher = PatternCache.compile(getStringValue(pattern, entity, targetEntity, lineProcessResult)).matcher(lineProcessResult.line());
+						return inverted ^ matcher.find();
+					} catch (PatternSyntaxException _) {
+					}
+				}
 
-			// We get the actual string value and try to compile the Pattern. If it's valid, we return the boolean match
-			try {
-				Matcher matcher = Pattern.compile(getStringValue(condition, entity, targetEntity, lineProcessResult)).matcher(lineProcessResult.line);
-				return inverted ^ matcher.find();
-			} catch (PatternSyntaxException _) {
+				// If none of the checks were respected, the condition is not satisfied
+				return false;
 			}
 		}
-
-		// If none of the checks were respected, the condition is not satisfied
-		return false;
 	}
 
 }
@@ -0,0 +1,190 @@
+package org.lida.Languages;
+
+import javafx.util.Pair;
+
+import java.util.*;
+
+
+// Class removing comments and code texts from the lines of a file, compiled once from a language's Comments and Text declarations.
+// Each line is stripped in a single pass on its characters, and the open comment or code text is kept across the lines of the file
+public class CodeStripper {
+
+	// Value of the open delimiter when we are inside code
+	private static final int NONE = -1;
+
+	// Characters handled by the start table. Delimiters starting with other characters are found with a map
+	private static final int TABLE_CHARS = 128;
+
+	// Kinds of delimiters found inside code
+	private enum DelimiterType {lineComment, blockComment, codeText}
+
+	// Record storing a compiled delimiter of comments or code texts
+	private record Delimiter(DelimiterType type, String start, String end, boolean backslashEscapes, String[] endExceptions) {
+		/*
+		The data inside the record are:
+			type of the delimiter,
+			characters that identify its start,
+			characters that identify its end, empty for line comments,
+			flag indicating whether a backslash escapes the following character, for code texts declaring a backslash exception,
+			other sequences that don't end the code text even if they contain its end
+		 */
+	}
+
+	// Class storing the stripping state of a file, which is the comment or code text still open at the end of the last line
+	public static class State {
+		private int openDelimiter = NONE;
+	}
+
+	// Buffer reused by each thread for the stripped lines, so that only the resulting string is allocated
+	private static final ThreadLocal<StringBuilder> lineBuffer = ThreadLocal.withInitial(StringBuilder::new);
+
+	// --------------------- Stripper data ---------------------
+
+	// Every delimiter of the language
+	private final Delimiter[] delimiters;
+
+	// Positions of the delimiters starting with each character below TABLE_CHARS, sorted by decreasing start length so the longest start is found first
+	private final int[][] charToDelimiters = new int[TABLE_CHARS][];
+
+	// Positions of the delimiters starting with the other characters
+	private final Map<Character, int[]> otherCharToDelimiters = new HashMap<>();
+
+	// --------------------- Constructor ---------------------
+
+	public CodeStripper(List<Pair<String, String>> comments, List<CodeTextRule> codeTexts) {
+		List<Delimiter> delimiterList = new ArrayList<>();
+
+		// Comments without an end are line comments, the others are block comments
+		for (Pair<String, String> comment : comments) {
+			if (comment.getKey().isEmpty()) continue;
+			boolean lineComment = comment.getValue().isEmpty();
+			delimiterList.add(new Delimiter(lineComment ? DelimiterType.lineComment : DelimiterType.blockComment, comment.getKey(), comment.getValue(), false, new String[0]));
+		}
+
+		// Code texts exceptions starting with a backslash make it an escape character, the others are checked before each end
+		for (CodeTextRule codeText : codeTexts) {
+			if (codeText.start().isEmpty() || codeText.end().isEmpty()) continue;
+			boolean backslashEscapes = codeText.endExceptions().stream().anyMatch(exception -> exception.startsWith("\\"));
+			String[] endExceptions = codeText.endExceptions().stream().filter(exception -> !exception.isEmpty() && !exception.startsWith("\\")).toArray(String[]::new);
+			delimiterList.add(new Delimiter(DelimiterType.codeText, codeText.start(), codeText.end(), backslashEscapes, endExceptions));
+		}
+
+		delimiters = delimiterList.toArray(new Delimiter[0]);
+
+		// We group the delimiters by the first character of their start, so at each position only the possible ones are checked
+		Map<Character, List<Integer>> firstCharToDelimiters = new HashMap<>();
+		for (int i = 0; i < delimiters.length; i++) {
+			firstCharToDelimiters.computeIfAbsent(delimiters[i].start().charAt(0), k -> new ArrayList<>()).add(i);
+		}
+
+		for (Map.Entry<Character, List<Integer>> entry : firstCharToDelimiters.entrySet()) {
+			int[] positions = entry.getValue().stream().sorted(Comparator.comparingInt(i -> -delimiters[i].start().length())).mapToInt(Integer::intValue).toArray();
+			if (entry.getKey() < TABLE_CHARS) {
+				charToDelimiters[entry.getKey()] = positions;
+			} else {
+				otherCharToDelimiters.put(entry.getKey(), positions);
+			}
+		}
+	}
+
+	// --------------------- Public functions ---------------------
+
+	// Returns the code of a line without its comments and code texts, updating the file state with the comment or code text still open at its end
+	public String stripLine(String line, State state) {
+		int lineLength = line.length();
+		int pos = 0;
+
+		// If we are inside code and the line has no delimiters, it's returned as it is
+		int start = (state.openDelimiter == NONE) ? findDelimiter(line, 0) : 0;
+		if (state.openDelimiter == NONE && start == lineLength) return line;
+
+		StringBuilder result = lineBuffer.get();
+		result.setLength(0);
+
+		while (pos < lineLength) {
+			if (state.openDelimiter == NONE) {
+
+				// Inside code, we keep everything up to the next delimiter start, which has already been found for the first part of the line
+				if (pos > 0) start = findDelimiter(line, pos);
+				result.append(line, pos, start);
+				if (start == lineLength) break;
+
+				// The found delimiter is the longest one starting there
+				int delimiterIndex = getDelimiterAt(line, start);
+				Delimiter delimiter = delimiters[delimiterIndex];
+
+				// A line comment makes all the rest of the line a comment
+				if (delimiter.type() == DelimiterType.lineComment) break;
+
+				state.openDelimiter = delimiterIndex;
+				pos = start + delimiter.start().length();
+			} else {
+
+				// Inside a comment or code text, we skip everything up to its end
+				Delimiter delimiter = delimiters[state.openDelimiter];
+				int end = findEnd(line, pos, delimiter);
+				if (end == -1) break;
+
+				state.openDelimiter = NONE;
+				pos = end;
+			}
+		}
+
+		return result.toString();
+	}
+
+	// --------------------- Helper functions ---------------------
+
+	// Helper function to find the position of the next delimiter start, or the line length if there isn't one
+	private int findDelimiter(String line, int pos) {
+		for (int lineLength = line.length(); pos < lineLength; pos++) {
+			char c = line.charAt(pos);
+			int[] candidates = (c < TABLE_CHARS) ? charToDelimiters[c] : otherCharToDelimiters.get(c);
+			if (candidates == null) continue;
+
+			for (int candidate : candidates) {
+				if (line.startsWith(delimiters[candidate].start(), pos)) return pos;
+			}
+		}
+		return line.length();
+	}
+
+	// Helper function to get the longest delimiter starting at the given position, which must have one
+	private int getDelimiterAt(String line, int pos) {
+		char c = line.charAt(pos);
+		for (int candidate : (c < TABLE_CHARS) ? charToDelimiters[c] : otherCharToDelimiters.get(c)) {
+			if (line.startsWith(delimiters[candidate].start(), pos)) return candidate;
+		}
+		throw new IllegalStateException("No delimiter at " + pos);
+	}
+
+	// Helper function to find the position after the end of a comment or code text, or -1 if it doesn't end in the line
+	private static int findEnd(String line, int pos, Delimiter delimiter) {
+		String end = delimiter.end();
+		char endFirst = end.charAt(0);
+
+		for (int lineLength = line.length(); pos < lineLength; pos++) {
+			char c = line.charAt(pos);
+
+			// Escaped characters can't end the code text, so they are skipped with their backslash
+			if (c == '\\' && delimiter.backslashEscapes()) {
+				pos++;
+				continue;
+			}
+
+			if (c != endFirst || !line.startsWith(end, pos)) continue;
+
+			// The other exceptions keep the end from closing the code text when they come right before it
+			boolean isException = false;
+			for (String exception : delimiter.endExceptions()) {
+				if (pos >= exception.length() && line.startsWith(exception, pos - exception.length())) {
+					isException = true;
+					break;
+				}
+			}
+			if (!isException) return pos + end.length();
+		}
+
+		return -1;
+	}
+}
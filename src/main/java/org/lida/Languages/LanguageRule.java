@@ -5,7 +5,8 @@ import java.util.List;
 
 
 // Record storing a rule of a programming language
-public record LanguageRule(String name, CodeReader.RuleTypes type, String pattern, int totalNumber, List<String> conditions, String constantValue, boolean hidden, boolean debug) {
+public record LanguageRule(String name, CodeReader.RuleTypes type, String pattern, int totalNumber, List<String> conditions, String constantValue, String qualified, boolean hidden, boolean debug, CodeReader.RegexEngines engine,
+						   String until, int maxLine, RuleTemplate patternTemplate, RuleValue value, RuleTemplate qualifiedTemplate, List<RuleCondition> parsedConditions) {
 	/*
 	The data inside the record are:
 		name of the rule,
@@ -14,7 +15,24 @@ public record LanguageRule(String name, CodeReader.RuleTypes type, String patter
 		total number of times the rule can be applied inside a file,
 		list of conditions that this rule needs to satisfy (null if there are none),
 		constant value of the rule (null if the rule is not constant),
+		qualified name declaration of the rule: the prefix of the found Identifiers qualified names, or the Pattern catching the qualified name found by a Dependency (null if there are none),
 		hidden flag specifying if this rule should be displayed to the user (true by default),
-		debug flag enabling the console log for this rule (false by default)
+		debug flag enabling the console log for this rule (false by default),
+		regex engine running the pattern of the rule on the lines (java.util.regex by default),
+		pattern of the code line ending the region of the file where the rule is applied (null if there are none),
+		last line of the file where the rule is applied (-1 if there are none),
+		pattern of the rule with its Variables markers already found (null if there are none),
+		constant value of the rule already parsed (null if the rule is not constant),
+		qualified name declaration with its Variables markers already found (null if there are none),
+		conditions of the rule already parsed, in the same order of the conditions list (empty if there are none)
 	 */
+
+	// Creates a rule from the values read inside its rules file, parsing its pattern, value and conditions a single time
+	public LanguageRule(String name, CodeReader.RuleTypes type, String pattern, int totalNumber, List<String> conditions, String constantValue, String qualified, boolean hidden, boolean debug, CodeReader.RegexEngines engine, String until, int maxLine) {
+		this(name, type, pattern, totalNumber, conditions, constantValue, qualified, hidden, debug, engine, until, maxLine,
+				(pattern == null) ? null : RuleTemplate.parse(pattern),
+				(constantValue == null) ? null : RuleValue.parse(constantValue),
+				(qualified == null) ? null : RuleTemplate.parseOperand(qualified),
+				(conditions == null) ? List.of() : conditions.stream().map(RuleCondition::parse).toList());
+	}
 }
@@ -3,7 +3,13 @@ package org.lida.Languages;
 import javafx.util.Pair;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 
 // Class containing all information about a language's rules file
@@ -20,37 +26,6 @@ public class LanguageRules {
 		comments.add(new Pair<>(start, end));
 	}
 
-	// Comments helper functions to get specific types of comments
-	public List<String> getLineComments() {
-		List<String> result = new ArrayList<>();
-		for (Pair<String, String> comment : comments) {
-			if (comment.getValue().isEmpty()) {
-				result.add(comment.getKey());
-			}
-		}
-		return result;
-	}
-
-	public List<String> getCommentStarts() {
-		List<String> result = new ArrayList<>();
-		for (Pair<String, String> comment : comments) {
-			if (!comment.getValue().isEmpty()) {
-				result.add(comment.getKey());
-			}
-		}
-		return result;
-	}
-
-	public List<String> getCommentEnds() {
-		List<String> result = new ArrayList<>();
-		for (Pair<String, String> comment : comments) {
-			if (!comment.getValue().isEmpty()) {
-				result.add(comment.getValue());
-			}
-		}
-		return result;
-	}
-
 
 	// CodeTextRules list of this language
 	private final List<CodeTextRule> codeTexts = new ArrayList<>();
@@ -67,16 +42,186 @@ public class LanguageRules {
 	// LanguageRules list of this language
 	private final List<LanguageRule> rules = new ArrayList<>();
 
+	// Mapping of every rule to its position inside the rules list, used to refer to a rule outside of the analysis
+	private final Map<LanguageRule, Integer> ruleToIndex = new IdentityHashMap<>();
+
 	public List<LanguageRule> getRules() {
 		return rules;
 	}
 
+	// Rules of each type, split when they are added so that every file doesn't filter them again.
+	// Constant Variable and Identifier rules are always applied, ignoring the lines, so they are kept apart from the ones applied on the lines
+	private final Map<CodeReader.RuleTypes, List<LanguageRule>> typeToRules = new EnumMap<>(CodeReader.RuleTypes.class);
+	private final Map<CodeReader.RuleTypes, List<LanguageRule>> typeToConstantRules = new EnumMap<>(CodeReader.RuleTypes.class);
+	private final Map<CodeReader.RuleTypes, List<LanguageRule>> typeToLineRules = new EnumMap<>(CodeReader.RuleTypes.class);
+
+	// Groups of the rules with the same pattern, identified by their position. Rules repeated with different conditions share their group,
+	// so their pattern is run only once on each line
+	private final Map<String, Integer> patternToGroup = new HashMap<>();
+	private final Map<LanguageRule, Integer> ruleToPatternGroup = new IdentityHashMap<>();
+	private final List<Boolean> patternGroupToVariables = new ArrayList<>();
+
+	// Regions of the files where the line rules are applied, identified by their position. Rules with the same region end and last line share it,
+	// so the region end pattern is run only once on each line while reading the file
+	private final Map<String, Integer> regionToPosition = new HashMap<>();
+	private final Map<LanguageRule, Integer> ruleToRegion = new IdentityHashMap<>();
+	private final List<Pattern> regionToUntil = new ArrayList<>();
+	private final List<Integer> regionToMaxLine = new ArrayList<>();
+
+	// Number of line rules applied on the whole file. Without them, the file isn't read anymore once every region has ended
+	private int unboundedLineRules = 0;
+
+	// Mapping of every rule name to its id. Rules with the same name share it, as the conditions refer to the rules by their name
+	private final Map<String, Integer> ruleNameToId = new HashMap<>();
+
 	public void addRule(LanguageRule rule) {
+		ruleToIndex.put(rule, rules.size());
 		rules.addLast(rule);
+		ruleNameToId.putIfAbsent(rule.name(), ruleNameToId.size());
+
+		if (rule.pattern() != null) {
+			ruleToPatternGroup.put(rule, patternToGroup.computeIfAbsent(rule.engine() + " " + rule.pattern(), k -> {
+				patternGroupToVariables.add(rule.patternTemplate().hasVariables());
+				return patternGroupToVariables.size() - 1;
+			}));
+		}
+
+		typeToRules.computeIfAbsent(rule.type(), k -> new ArrayList<>()).add(rule);
+		boolean constant = rule.constantValue() != null && rule.type() != CodeReader.RuleTypes.dependency;
+		(constant ? typeToConstantRules : typeToLineRules).computeIfAbsent(rule.type(), k -> new ArrayList<>()).add(rule);
+		if (constant) return;
+
+		if (rule.until() == null && rule.maxLine() == -1) {
+			unboundedLineRules++;
+			return;
+		}
+		ruleToRegion.put(rule, regionToPosition.computeIfAbsent(rule.maxLine() + " " + rule.until(), k -> {
+			regionToUntil.add((rule.until() == null) ? null : Pattern.compile(rule.until()));
+			regionToMaxLine.add(rule.maxLine());
+			return regionToUntil.size() - 1;
+		}));
+	}
+
+	public List<LanguageRule> getRules(CodeReader.RuleTypes type) {
+		return typeToRules.getOrDefault(type, List.of());
+	}
+
+	public List<LanguageRule> getConstantRules(CodeReader.RuleTypes type) {
+		return typeToConstantRules.getOrDefault(type, List.of());
+	}
+
+	public List<LanguageRule> getLineRules(CodeReader.RuleTypes type) {
+		return typeToLineRules.getOrDefault(type, List.of());
+	}
+
+	public int getPatternGroup(LanguageRule rule) {
+		return ruleToPatternGroup.getOrDefault(rule, -1);
+	}
+
+	public int getPatternGroupsCount() {
+		return patternGroupToVariables.size();
+	}
+
+	public boolean patternGroupHasVariables(int group) {
+		return patternGroupToVariables.get(group);
+	}
+
+	public int getRuleRegion(LanguageRule rule) {
+		return ruleToRegion.getOrDefault(rule, -1);
+	}
+
+	public int getRegionsCount() {
+		return regionToUntil.size();
+	}
+
+	public Pattern getRegionUntil(int region) {
+		return regionToUntil.get(region);
+	}
+
+	public int getRegionMaxLine(int region) {
+		return regionToMaxLine.get(region);
+	}
+
+	public boolean hasOnlyRegionLineRules() {
+		return unboundedLineRules == 0 && !regionToUntil.isEmpty();
+	}
+
+	public int getRuleNameId(String name) {
+		return ruleNameToId.getOrDefault(name, -1);
+	}
+
+	public int getRuleIndex(LanguageRule rule) {
+		return ruleToIndex.getOrDefault(rule, -1);
 	}
 
 	public boolean hasNoRules() {
 		return rules.isEmpty();
 	}
 
+
+	// Stripper removing the comments and code texts from the code lines, built once all the comments and code texts have been added
+	private CodeStripper codeStripper = null;
+
+	public CodeStripper getCodeStripper() {
+		return codeStripper;
+	}
+
+	public void buildCodeStripper() {
+		codeStripper = new CodeStripper(comments, codeTexts);
+	}
+
+	// Lexer splitting the code lines into the token stream matched by the rules patterns, built once all the rules have been added
+	private CodeLexer codeLexer = null;
+
+	public CodeLexer getCodeLexer() {
+		return codeLexer;
+	}
+
+	// Types whose line rules include at least one rule without a token pattern, so their lines can't be skipped when no required token is found
+	private final Map<CodeReader.RuleTypes, Boolean> typeToUnfilteredRules = new EnumMap<>(CodeReader.RuleTypes.class);
+
+	public boolean hasUnfilteredRules(CodeReader.RuleTypes type) {
+		return codeLexer == null || typeToUnfilteredRules.getOrDefault(type, false);
+	}
+
+	// Extracts the literals required by each rule pattern and builds the lexer matching them on the token stream.
+	// Rules with the same pattern share its group, so the literals are extracted once per group
+	public void buildCodeLexer() {
+		List<List<LiteralPrefilter.RequiredLiteral>> groupToLiterals = new ArrayList<>(Collections.nCopies(getPatternGroupsCount(), null));
+		for (LanguageRule rule : rules) {
+			int group = getPatternGroup(rule);
+			if (group != -1 && groupToLiterals.get(group) == null) groupToLiterals.set(group, LiteralPrefilter.getRequiredLiterals(rule.pattern()));
+		}
+
+		codeLexer = new CodeLexer(groupToLiterals);
+
+		for (Map.Entry<CodeReader.RuleTypes, List<LanguageRule>> entry : typeToLineRules.entrySet()) {
+			typeToUnfilteredRules.put(entry.getKey(), entry.getValue().stream().anyMatch(rule -> !codeLexer.hasTokenPattern(getPatternGroup(rule))));
+		}
+	}
+
+
+	// Regex engine used by the rules that don't choose one
+	private CodeReader.RegexEngines defaultEngine = CodeReader.RegexEngines.java;
+
+	public CodeReader.RegexEngines getDefaultEngine() {
+		return defaultEngine;
+	}
+
+	public void setDefaultEngine(CodeReader.RegexEngines defaultEngine) {
+		this.defaultEngine = defaultEngine;
+	}
+
+
+	// Hash of the rules file content, used to discard the cached analysis results when the rules change
+	private String rulesHash = "";
+
+	public String getRulesHash() {
+		return rulesHash;
+	}
+
+	public void setRulesHash(String rulesHash) {
+		this.rulesHash = rulesHash;
+	}
+
 }
@@ -0,0 +1,9 @@
+package org.lida.Languages;
+
+
+// Interface of the matchers running a rule pattern on the lines of a file, implemented by both the regex engines
+public interface LineMatcher {
+
+	// Returns the caught string of the first match inside the line, empty if there's no caught string, or null if there's no match
+	String find(String line);
+}
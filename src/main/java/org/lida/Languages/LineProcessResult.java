@@ -0,0 +1,12 @@
+package org.lida.Languages;
+
+
+// Record holding a rule match found on a code line, so it can be processed right away or kept for a later phase
+public record LineProcessResult(String line, String match, LanguageRule languageRule) {
+	/*
+	The data inside the record are:
+		code line the rule has been applied on (empty for constant rules),
+		string caught by the rule pattern (empty if there are none),
+		rule that has been applied
+	 */
+}
@@ -0,0 +1,622 @@
+package org.lida.Languages;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+// Class matching a rule Pattern in linear time on the length of the line, simulating its automaton with all its states at once (Pike VM).
+// It supports the subset of the Pattern syntax used by the rules files: characters, escapes, character classes, groups, alternations,
+// anchors, word boundaries and greedy or lazy quantifiers. The caught string of the first group is the same found by java.util.regex,
+// because the states keep the priority of the backtracking order. Patterns with other constructs can't be compiled, and use java.util.regex
+public class LinearRegex {
+
+	// Maximum number of instructions of a compiled Pattern, reached only by large counted quantifiers
+	private static final int MAX_INSTRUCTIONS = 4096;
+
+	// Instructions of the automaton
+	private static final int CHAR_CLASS = 0;
+	private static final int ANY = 1;
+	private static final int SPLIT = 2;
+	private static final int JUMP = 3;
+	private static final int SAVE = 4;
+	private static final int ASSERT = 5;
+	private static final int MATCH = 6;
+
+	// Kinds of assertions, that don't consume characters
+	private static final int BEGIN = 0;
+	private static final int END = 1;
+	private static final int WORD_BOUNDARY = 2;
+	private static final int NOT_WORD_BOUNDARY = 3;
+
+	// --------------------- Compiled Pattern ---------------------
+
+	// Instructions of the automaton, with their arguments. For a split, the first argument is the preferred one
+	private final int[] operations;
+	private final int[] firstArguments;
+	private final int[] secondArguments;
+	private final CharClass[] charClasses;
+
+	// Flag indicating whether the Pattern has a group whose caught string is returned
+	private final boolean hasGroup;
+
+	// Flag indicating whether the Pattern starts with "^", so it can only match at the start of the line
+	private final boolean anchored;
+
+	private LinearRegex(List<int[]> instructions, List<CharClass> classes, boolean hasGroup) {
+		operations = new int[instructions.size()];
+		firstArguments = new int[instructions.size()];
+		secondArguments = new int[instructions.size()];
+		for (int i = 0; i < instructions.size(); i++) {
+			operations[i] = instructions.get(i)[0];
+			firstArguments[i] = instructions.get(i)[1];
+			secondArguments[i] = instructions.get(i)[2];
+		}
+		charClasses = classes.toArray(new CharClass[0]);
+		this.hasGroup = hasGroup;
+		anchored = operations[0] == ASSERT && firstArguments[0] == BEGIN;
+	}
+
+	// Compiles a Pattern, returning null if it uses constructs that aren't supported
+	public static LinearRegex compile(String pattern) {
+		try {
+			Parser parser = new Parser(pattern);
+			Node root = parser.parseAlternatives();
+			if (parser.position < pattern.length()) return null;
+
+			Compiler compiler = new Compiler();
+			compiler.emit(root);
+			compiler.add(MATCH, 0, 0);
+			return new LinearRegex(compiler.instructions, compiler.classes, parser.groupsCount > 0);
+		} catch (IllegalArgumentException _) {
+			return null;
+		}
+	}
+
+	// Returns a new matcher of this Pattern. Like a java.util.regex Matcher, it can be reused for many lines, but only by one thread
+	public LineMatcher matcher() {
+		return new LinearMatcher();
+	}
+
+	// --------------------- Matching ---------------------
+
+	// Class simulating the automaton on a line, keeping the states reached at the current position in priority order
+	private class LinearMatcher implements LineMatcher {
+
+		// States reached at the current and next positions, with the captured positions of the first group of each one
+		private int[] currentStates = new int[operations.length];
+		private int[][] currentCaptures = new int[operations.length][];
+		private int currentCount = 0;
+		private int[] nextStates = new int[operations.length];
+		private int[][] nextCaptures = new int[operations.length][];
+		private int nextCount = 0;
+
+		// Step in which every instruction has last been added, so each one is added only once per position, by its highest priority state
+		private final int[] instructionToStep = new int[operations.length];
+		private int step = 0;
+
+		// Stack used to follow the instructions that don't consume characters
+		private final int[] stackInstructions = new int[operations.length * 2 + 2];
+		private final int[][] stackCaptures = new int[operations.length * 2 + 2][];
+
+		@Override
+		public String find(String line) {
+			int[] matchCaptures = null;
+			int length = line.length();
+			currentCount = 0;
+			step++;
+
+			// The start position advances after each character. New states are started only until a match is found,
+			// and only at the start of the line for the Patterns starting with "^"
+			int position = 0;
+			while (true) {
+				if (matchCaptures == null && (position == 0 || !anchored)) addState(0, new int[]{-1, -1}, line, position, true);
+				if (currentCount == 0 && (matchCaptures != null || anchored || position >= length)) break;
+
+				int codePoint = (position < length) ? line.codePointAt(position) : -1;
+				int nextPosition = (position < length) ? position + Character.charCount(codePoint) : position;
+				step++;
+				nextCount = 0;
+
+				for (int i = 0; i < currentCount; i++) {
+					int instruction = currentStates[i];
+					int operation = operations[instruction];
+
+					// A match makes the states with lower priority useless, while the ones with higher priority can still find a preferred match
+					if (operation == MATCH) {
+						matchCaptures = currentCaptures[i];
+						break;
+					}
+
+					if (codePoint == -1) continue;
+					boolean consumed = (operation == ANY) ? !isLineTerminator(codePoint) : charClasses[firstArguments[instruction]].matches(codePoint);
+					if (consumed) addState(instruction + 1, currentCaptures[i], line, nextPosition, false);
+				}
+
+				if (position >= length) break;
+				swapStates();
+				position = nextPosition;
+			}
+
+			if (matchCaptures == null) return null;
+			if (!hasGroup || matchCaptures[0] == -1 || matchCaptures[1] == -1) return "";
+			return line.substring(matchCaptures[0], matchCaptures[1]);
+		}
+
+		// Helper function to add a state and all the states reachable from it without consuming characters, in priority order
+		private void addState(int startInstruction, int[] startCaptures, String line, int position, boolean current) {
+			int stackSize = 0;
+			stackInstructions[stackSize] = startInstruction;
+			stackCaptures[stackSize++] = startCaptures;
+
+			while (stackSize > 0) {
+				int instruction = stackInstructions[--stackSize];
+				int[] captures = stackCaptures[stackSize];
+				if (instructionToStep[instruction] == step) continue;
+				instructionToStep[instruction] = step;
+
+				switch (operations[instruction]) {
+					case JUMP -> {
+						stackInstructions[stackSize] = firstArguments[instruction];
+						stackCaptures[stackSize++] = captures;
+					}
+					case SPLIT -> {
+						// The preferred branch is pushed last, so it's followed first
+						stackInstructions[stackSize] = secondArguments[instruction];
+						stackCaptures[stackSize++] = captures;
+						stackInstructions[stackSize] = firstArguments[instruction];
+						stackCaptures[stackSize++] = captures;
+					}
+					case SAVE -> {
+						int[] newCaptures = captures.clone();
+						newCaptures[firstArguments[instruction]] = position;
+						stackInstructions[stackSize] = instruction + 1;
+						stackCaptures[stackSize++] = newCaptures;
+					}
+					case ASSERT -> {
+						if (!checkAssertion(firstArguments[instruction], line, position)) continue;
+						stackInstructions[stackSize] = instruction + 1;
+						stackCaptures[stackSize++] = captures;
+					}
+					default -> {
+						if (current) {
+							currentStates[currentCount] = instruction;
+							currentCaptures[currentCount++] = captures;
+						} else {
+							nextStates[nextCount] = instruction;
+							nextCaptures[nextCount++] = captures;
+						}
+					}
+				}
+			}
+		}
+
+		private void swapStates() {
+			int[] states = currentStates;
+			currentStates = nextStates;
+			nextStates = states;
+			int[][] captures = currentCaptures;
+			currentCaptures = nextCaptures;
+			nextCaptures = captures;
+			currentCount = nextCount;
+			nextCount = 0;
+		}
+	}
+
+	// Helper function to check an assertion at a position, with the same meaning it has in java.util.regex without flags
+	private static boolean checkAssertion(int assertion, String line, int position) {
+		int length = line.length();
+		return switch (assertion) {
+			case BEGIN -> position == 0;
+			case END -> {
+				// The end can also be before a final line terminator, or before a final "\r\n"
+				if (position == length) yield true;
+				if (position == length - 2) yield line.charAt(position) == '\r' && line.charAt(position + 1) == '\n';
+				if (position == length - 1) {
+					char c = line.charAt(position);
+					if (c == '\n') yield position == 0 || line.charAt(position - 1) != '\r';
+					yield isLineTerminator(c);
+				}
+				yield false;
+			}
+			default -> {
+				boolean before = position > 0 && isWordChar(line.charAt(position - 1));
+				boolean after = position < length && isWordChar(line.charAt(position));
+				yield (assertion == WORD_BOUNDARY) == (before != after);
+			}
+		};
+	}
+
+	private static boolean isLineTerminator(int c) {
+		return c == '\n' || c == '\r' || c == 0x85 || c == 0x2028 || c == 0x2029;
+	}
+
+	private static boolean isWordChar(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+	}
+
+	private static boolean isSpaceChar(int c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+	}
+
+	private static boolean isDigitChar(int c) {
+		return c >= '0' && c <= '9';
+	}
+
+	// --------------------- Character classes ---------------------
+
+	// Class storing a set of characters, with a table for the ASCII ones
+	private static class CharClass {
+
+		private final boolean[] asciiTable = new boolean[128];
+		private final List<int[]> ranges = new ArrayList<>();
+		private final List<Character> predefinedClasses = new ArrayList<>();
+		private boolean negated = false;
+
+		private void addRange(int start, int end) {
+			ranges.add(new int[]{start, end});
+		}
+
+		private void addPredefined(char predefinedClass) {
+			predefinedClasses.add(predefinedClass);
+		}
+
+		// Fills the ASCII table once the class is complete
+		private CharClass build() {
+			for (int c = 0; c < 128; c++) asciiTable[c] = computeMatch(c);
+			return this;
+		}
+
+		private boolean matches(int c) {
+			return (c < 128) ? asciiTable[c] : computeMatch(c);
+		}
+
+		private boolean computeMatch(int c) {
+			boolean found = false;
+			for (int[] range : ranges) {
+				if (c >= range[0] && c <= range[1]) {
+					found = true;
+					break;
+				}
+			}
+			for (int i = 0; i < predefinedClasses.size() && !found; i++) {
+				found = switch (predefinedClasses.get(i)) {
+					case 'w' -> isWordChar(c);
+					case 'W' -> !isWordChar(c);
+					case 's' -> isSpaceChar(c);
+					case 'S' -> !isSpaceChar(c);
+					case 'd' -> isDigitChar(c);
+					default -> !isDigitChar(c);
+				};
+			}
+			return found != negated;
+		}
+	}
+
+	// --------------------- Parsing ---------------------
+
+	// Nodes of the parsed Pattern
+	private sealed interface Node permits CharNode, AnyNode, AssertNode, ConcatNode, AlternationNode, RepeatNode, GroupNode {}
+
+	private record CharNode(CharClass charClass) implements Node {}
+
+	private record AnyNode() implements Node {}
+
+	private record AssertNode(int assertion) implements Node {}
+
+	private record ConcatNode(List<Node> nodes) implements Node {}
+
+	private record AlternationNode(List<Node> alternatives) implements Node {}
+
+	private record RepeatNode(Node node, int min, int max, boolean lazy) implements Node {}
+
+	private record GroupNode(Node node, int index) implements Node {}
+
+	// Helper class parsing a Pattern into its nodes. Any construct it doesn't support throws an IllegalArgumentException
+	private static class Parser {
+
+		private final String pattern;
+		private int position = 0;
+		private int groupsCount = 0;
+
+		private Parser(String pattern) {
+			this.pattern = pattern;
+		}
+
+		private Node parseAlternatives() {
+			List<Node> alternatives = new ArrayList<>();
+			alternatives.add(parseSequence());
+			while (position < pattern.length() && pattern.charAt(position) == '|') {
+				position++;
+				alternatives.add(parseSequence());
+			}
+			return (alternatives.size() == 1) ? alternatives.getFirst() : new AlternationNode(alternatives);
+		}
+
+		private Node parseSequence() {
+			List<Node> nodes = new ArrayList<>();
+			while (position < pattern.length()) {
+				char c = pattern.charAt(position);
+				if (c == '|' || c == ')') break;
+				nodes.add(parseQuantifier(parseAtom()));
+			}
+			return new ConcatNode(nodes);
+		}
+
+		private Node parseAtom() {
+			int c = pattern.codePointAt(position);
+			position += Character.charCount(c);
+
+			switch (c) {
+				case '(' -> {
+					int index = -1;
+					if (pattern.startsWith("?:", position)) {
+						position += 2;
+					} else if (pattern.startsWith("?", position)) {
+						// Lookarounds, named groups, atomic groups and flags aren't supported
+						throw new IllegalArgumentException();
+					} else {
+						index = ++groupsCount;
+					}
+					Node node = parseAlternatives();
+					if (position >= pattern.length() || pattern.charAt(position) != ')') throw new IllegalArgumentException();
+					position++;
+					return new GroupNode(node, index);
+				}
+				case '[' -> {
+					return new CharNode(parseClass());
+				}
+				case '.' -> {
+					return new AnyNode();
+				}
+				case '^' -> {
+					return new AssertNode(BEGIN);
+				}
+				case '$' -> {
+					return new AssertNode(END);
+				}
+				case '\\' -> {
+					if (position >= pattern.length()) throw new IllegalArgumentException();
+					char escaped = pattern.charAt(position++);
+					if (escaped == 'b') return new AssertNode(WORD_BOUNDARY);
+					if (escaped == 'B') return new AssertNode(NOT_WORD_BOUNDARY);
+
+					CharClass charClass = new CharClass();
+					addEscape(charClass, escaped);
+					return new CharNode(charClass.build());
+				}
+				case '*', '+', '?', '{' -> throw new IllegalArgumentException();
+				default -> {
+					CharClass charClass = new CharClass();
+					charClass.addRange(c, c);
+					return new CharNode(charClass.build());
+				}
+			}
+		}
+
+		// Parses a character class. Nested classes and intersections aren't supported
+		private CharClass parseClass() {
+			CharClass charClass = new CharClass();
+			if (pattern.startsWith("^", position)) {
+				charClass.negated = true;
+				position++;
+			}
+			if (pattern.startsWith("]", position)) throw new IllegalArgumentException();
+
+			while (true) {
+				if (position >= pattern.length()) throw new IllegalArgumentException();
+				char c = pattern.charAt(position);
+				if (c == ']') {
+					position++;
+					return charClass.build();
+				}
+				if (c == '[' || pattern.startsWith("&&", position)) throw new IllegalArgumentException();
+
+				// A predefined class inside the class can't be part of a range
+				if (c == '\\' && position + 1 < pattern.length() && "wWsSdD".indexOf(pattern.charAt(position + 1)) != -1) {
+					charClass.addPredefined(pattern.charAt(position + 1));
+					position += 2;
+					if (pattern.startsWith("-", position) && !pattern.startsWith("-]", position)) throw new IllegalArgumentException();
+					continue;
+				}
+
+				int start = parseClassChar();
+				if (pattern.startsWith("-", position) && !pattern.startsWith("-]", position)) {
+					position++;
+					if (pattern.startsWith("\\", position) && position + 1 < pattern.length() && "wWsSdD".indexOf(pattern.charAt(position + 1)) != -1)
+						throw new IllegalArgumentException();
+					int end = parseClassChar();
+					if (end < start) throw new IllegalArgumentException();
+					charClass.addRange(start, end);
+				} else {
+					charClass.addRange(start, start);
+				}
+			}
+		}
+
+		// Parses a single character inside a class
+		private int parseClassChar() {
+			int c = pattern.codePointAt(position);
+			position += Character.charCount(c);
+			if (c != '\\') return c;
+
+			if (position >= pattern.length()) throw new IllegalArgumentException();
+			char escaped = pattern.charAt(position++);
+			return getEscapedChar(escaped);
+		}
+
+		// Helper function to add an escape outside of classes, which is a predefined class or a single character
+		private void addEscape(CharClass charClass, char escaped) {
+			if ("wWsSdD".indexOf(escaped) != -1) {
+				charClass.addPredefined(escaped);
+			} else {
+				int c = getEscapedChar(escaped);
+				charClass.addRange(c, c);
+			}
+		}
+
+		// Helper function to get the character of an escape. Escapes with arguments or special meanings aren't supported
+		private static int getEscapedChar(char escaped) {
+			return switch (escaped) {
+				case 't' -> '\t';
+				case 'n' -> '\n';
+				case 'r' -> '\r';
+				case 'f' -> '\f';
+				default -> {
+					if (Character.isLetterOrDigit(escaped)) throw new IllegalArgumentException();
+					yield escaped;
+				}
+			};
+		}
+
+		// Parses the quantifier following an atom, if any
+		private Node parseQuantifier(Node node) {
+			if (position >= pattern.length()) return node;
+			char c = pattern.charAt(position);
+
+			int min;
+			int max;
+			switch (c) {
+				case '*' -> {
+					min = 0;
+					max = -1;
+					position++;
+				}
+				case '+' -> {
+					min = 1;
+					max = -1;
+					position++;
+				}
+				case '?' -> {
+					min = 0;
+					max = 1;
+					position++;
+				}
+				case '{' -> {
+					int end = pattern.indexOf('}', position);
+					if (end == -1) throw new IllegalArgumentException();
+					String[] bounds = pattern.substring(position + 1, end).split(",", -1);
+					if (bounds.length > 2 || !isNumber(bounds[0])) throw new IllegalArgumentException();
+					min = Integer.parseInt(bounds[0]);
+					if (bounds.length == 1) {
+						max = min;
+					} else if (bounds[1].isEmpty()) {
+						max = -1;
+					} else if (isNumber(bounds[1])) {
+						max = Integer.parseInt(bounds[1]);
+						if (max < min) throw new IllegalArgumentException();
+					} else {
+						throw new IllegalArgumentException();
+					}
+					position = end + 1;
+				}
+				default -> {
+					return node;
+				}
+			}
+
+			// Quantifiers can't follow assertions or other quantifiers, and possessive ones aren't supported
+			if (node instanceof AssertNode) throw new IllegalArgumentException();
+			boolean lazy = pattern.startsWith("?", position);
+			if (lazy) position++;
+			if (position < pattern.length() && "*+?{".indexOf(pattern.charAt(position)) != -1) throw new IllegalArgumentException();
+
+			// Repeating something that can match an empty string needs the special handling of the backtracking, so it isn't supported
+			if (max != 1 && isNullable(node)) throw new IllegalArgumentException();
+			return new RepeatNode(node, min, max, lazy);
+		}
+
+		private static boolean isNumber(String string) {
+			return !string.isEmpty() && string.length() < 5 && string.chars().allMatch(Character::isDigit);
+		}
+
+		// Returns true if the node can match an empty string
+		private static boolean isNullable(Node node) {
+			return switch (node) {
+				case CharNode _, AnyNode _ -> false;
+				case AssertNode _ -> true;
+				case ConcatNode concatNode -> concatNode.nodes().stream().allMatch(Parser::isNullable);
+				case AlternationNode alternationNode -> alternationNode.alternatives().stream().anyMatch(Parser::isNullable);
+				case RepeatNode repeatNode -> repeatNode.min() == 0 || isNullable(repeatNode.node());
+				case GroupNode groupNode -> isNullable(groupNode.node());
+			};
+		}
+	}
+
+	// --------------------- Compilation ---------------------
+
+	// Helper class emitting the instructions of the parsed nodes
+	private static class Compiler {
+
+		private final List<int[]> instructions = new ArrayList<>();
+		private final List<CharClass> classes = new ArrayList<>();
+
+		private int add(int operation, int firstArgument, int secondArgument) {
+			if (instructions.size() >= MAX_INSTRUCTIONS) throw new IllegalArgumentException();
+			instructions.add(new int[]{operation, firstArgument, secondArgument});
+			return instructions.size() - 1;
+		}
+
+		private void emit(Node node) {
+			switch (node) {
+				case CharNode charNode -> {
+					classes.add(charNode.charClass());
+					add(CHAR_CLASS, classes.size() - 1, 0);
+				}
+				case AnyNode _ -> add(ANY, 0, 0);
+				case AssertNode assertNode -> add(ASSERT, assertNode.assertion(), 0);
+				case ConcatNode concatNode -> concatNode.nodes().forEach(this::emit);
+				case AlternationNode alternationNode -> {
+					// Each alternative but the last is preferred to the following ones, and jumps to the end once matched
+					List<Integer> jumps = new ArrayList<>();
+					List<Node> alternatives = alternationNode.alternatives();
+					for (int i = 0; i < alternatives.size(); i++) {
+						if (i < alternatives.size() - 1) {
+							int split = add(SPLIT, 0, 0);
+							instructions.get(split)[1] = instructions.size();
+							emit(alternatives.get(i));
+							jumps.add(add(JUMP, 0, 0));
+							instructions.get(split)[2] = instructions.size();
+						} else {
+							emit(alternatives.get(i));
+						}
+					}
+					for (int jump : jumps) instructions.get(jump)[1] = instructions.size();
+				}
+				case RepeatNode repeatNode -> emitRepeat(repeatNode);
+				case GroupNode groupNode -> {
+					// Only the positions of the first group are saved, as it's the only caught string used by the rules
+					if (groupNode.index() == 1) add(SAVE, 0, 0);
+					emit(groupNode.node());
+					if (groupNode.index() == 1) add(SAVE, 1, 0);
+				}
+			}
+		}
+
+		// Helper function to emit a quantified node: its required copies, followed by its optional copies or by a loop
+		private void emitRepeat(RepeatNode repeatNode) {
+			for (int i = 0; i < repeatNode.min(); i++) emit(repeatNode.node());
+
+			if (repeatNode.max() == -1) {
+				int split = add(SPLIT, 0, 0);
+				emit(repeatNode.node());
+				add(JUMP, split, 0);
+				setSplit(split, split + 1, instructions.size(), repeatNode.lazy());
+				return;
+			}
+
+			List<Integer> splits = new ArrayList<>();
+			for (int i = repeatNode.min(); i < repeatNode.max(); i++) {
+				int split = add(SPLIT, 0, 0);
+				splits.add(split);
+				emit(repeatNode.node());
+			}
+			for (int split : splits) setSplit(split, split + 1, instructions.size(), repeatNode.lazy());
+		}
+
+		// Helper function to set the branches of a split, preferring the repetition if greedy or the continuation if lazy
+		private void setSplit(int split, int repeat, int skip, boolean lazy) {
+			instructions.get(split)[1] = lazy ? skip : repeat;
+			instructions.get(split)[2] = lazy ? repeat : skip;
+		}
+	}
+}
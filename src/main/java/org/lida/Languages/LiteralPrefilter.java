@@ -0,0 +1,412 @@
+package org.lida.Languages;
+
+import java.util.*;
+
+
+// Class finding which rules can match before running their Patterns. Each rule Pattern is reduced to the literals that every match
+// must contain, and all the literals of a language are searched together with an Aho-Corasick automaton, in a single pass on a string.
+// The CodeLexer runs it once on every distinct token of a file, so the lines are then filtered on the token stream without being searched again
+public class LiteralPrefilter {
+
+	// Characters handled by the dense transition table. Other characters follow the failure links of the automaton
+	private static final int TABLE_CHARS = 128;
+
+	// Result shared by all the lines without literals
+	private static final int[] NO_LITERALS = new int[0];
+
+	// --------------------- Automaton data ---------------------
+
+	// Literals searched by the automaton, identified by their position
+	private final List<String> literals;
+
+	// Transitions of every state, as built from the literals. Used for the characters outside of the dense table
+	private final List<Map<Character, Integer>> stateToChildren = new ArrayList<>();
+
+	// Failure link of every state, pointing to the state of its longest proper suffix
+	private final int[] failures;
+
+	// Dense transition table for the characters below TABLE_CHARS, with the failure links already resolved
+	private final int[] table;
+
+	// Literals found when reaching each state, including the ones found through its failure links
+	private final int[][] stateToOutputs;
+
+	// --------------------- Constructor ---------------------
+
+	public LiteralPrefilter(List<String> literals) {
+		this.literals = List.copyOf(literals);
+
+		// We first build the trie of the literals
+		stateToChildren.add(new HashMap<>());
+		List<List<Integer>> outputs = new ArrayList<>();
+		outputs.add(new ArrayList<>());
+
+		for (int literalIndex = 0; literalIndex < this.literals.size(); literalIndex++) {
+			int state = 0;
+			for (char c : this.literals.get(literalIndex).toCharArray()) {
+				Integer child = stateToChildren.get(state).get(c);
+				if (child == null) {
+					child = stateToChildren.size();
+					stateToChildren.get(state).put(c, child);
+					stateToChildren.add(new HashMap<>());
+					outputs.add(new ArrayList<>());
+				}
+				state = child;
+			}
+			outputs.get(state).add(literalIndex);
+		}
+
+		// Then, we compute the failure links in breadth-first order, so the links of shorter suffixes are ready when needed
+		int statesCount = stateToChildren.size();
+		failures = new int[statesCount];
+		Deque<Integer> queue = new ArrayDeque<>(stateToChildren.getFirst().values());
+
+		while (!queue.isEmpty()) {
+			int state = queue.removeFirst();
+			for (Map.Entry<Character, Integer> child : stateToChildren.get(state).entrySet()) {
+				int childState = child.getValue();
+
+				// The failure of a child is the deepest state reachable with the same character from the failures of its parent
+				int failure = failures[state];
+				while (failure != 0 && !stateToChildren.get(failure).containsKey(child.getKey())) failure = failures[failure];
+				Integer failureChild = stateToChildren.get(failure).get(child.getKey());
+				failures[childState] = (failureChild == null || failureChild == childState) ? 0 : failureChild;
+
+				// A state also finds the literals of its failure state
+				outputs.get(childState).addAll(outputs.get(failures[childState]));
+				queue.addLast(childState);
+			}
+		}
+
+		stateToOutputs = new int[statesCount][];
+		for (int state = 0; state < statesCount; state++) {
+			stateToOutputs[state] = outputs.get(state).stream().mapToInt(Integer::intValue).toArray();
+		}
+
+		// Finally, we fill the dense table in breadth-first order, using the table of the failure state for the missing transitions
+		table = new int[statesCount * TABLE_CHARS];
+		queue.addLast(0);
+		while (!queue.isEmpty()) {
+			int state = queue.removeFirst();
+			for (int c = 0; c < TABLE_CHARS; c++) {
+				Integer child = stateToChildren.get(state).get((char) c);
+				if (child != null) {
+					table[state * TABLE_CHARS + c] = child;
+				} else {
+					table[state * TABLE_CHARS + c] = (state == 0) ? 0 : table[failures[state] * TABLE_CHARS + c];
+				}
+			}
+			queue.addAll(stateToChildren.get(state).values());
+		}
+	}
+
+	// --------------------- Public functions ---------------------
+
+	// Returns the number of literals searched by the automaton
+	public int getLiteralsCount() {
+		return literals.size();
+	}
+
+	// Searches all the literals inside a line, returning the positions of the found ones. The stamps of the found literals are set to the given one,
+	// so that each position is returned only once
+	public int[] findLiterals(String line, int[] literalToStamp, int stamp) {
+		int[] found = null;
+		int foundCount = 0;
+		int state = 0;
+
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			state = (c < TABLE_CHARS) ? table[state * TABLE_CHARS + c] : nextState(state, c);
+
+			for (int literalIndex : stateToOutputs[state]) {
+				if (literalToStamp[literalIndex] == stamp) continue;
+				literalToStamp[literalIndex] = stamp;
+
+				if (found == null) found = new int[literals.size()];
+				found[foundCount++] = literalIndex;
+			}
+		}
+
+		return (foundCount == 0) ? NO_LITERALS : Arrays.copyOf(found, foundCount);
+	}
+
+	// Helper function to follow the transitions of a character outside of the dense table
+	private int nextState(int state, char c) {
+		while (true) {
+			Integer child = stateToChildren.get(state).get(c);
+			if (child != null) return child;
+			if (state == 0) return 0;
+			state = failures[state];
+		}
+	}
+
+	// --------------------- Literal extraction ---------------------
+
+	// Record storing a literal that every match of a Pattern must contain, with what is known about the characters around it
+	public record RequiredLiteral(String text, boolean boundedStart, boolean boundedEnd) {
+		/*
+		The data inside the record are:
+			characters of the literal,
+			flag indicating whether the character before the literal can't be a word character, or the literal starts the line,
+			flag indicating whether the character after the literal can't be a word character, or the literal ends the line
+		 */
+	}
+
+	// Kinds of quantifier following an atom or a group
+	private static final int NO_QUANTIFIER = 0;
+	private static final int OPTIONAL = 1;
+	private static final int REPEATED = 2;
+	private static final int OPTIONAL_REPEATED = 3;
+
+	// Kinds of atom that aren't literal characters
+	private enum AtomType {boundary, nonWord, other}
+
+	// Returns the literals that every match of the Pattern must contain, in the order they appear in the match, or null if they can't be found.
+	// The extraction is conservative: any construct it doesn't fully understand stops the literal before it
+	public static List<RequiredLiteral> getRequiredLiterals(String pattern) {
+		// Patterns with Variables can contain anything once swapped, and case-insensitive or comments flags change the meaning of literals
+		if (pattern == null || pattern.contains("||") || pattern.contains("\\Q") || pattern.matches("(?s).*\\(\\?[a-zA-Z]*[ix].*")) return null;
+
+		try {
+			LiteralParser parser = new LiteralParser(pattern);
+			List<RequiredLiteral> requiredLiterals = parser.parseAlternatives();
+			if (parser.position < pattern.length()) return null;
+			return requiredLiterals;
+		} catch (IllegalArgumentException _) {
+			return null;
+		}
+	}
+
+	// Helper class parsing a Pattern to collect the literals required by all its matches
+	private static class LiteralParser {
+
+		private final String pattern;
+		private int position = 0;
+
+		// Whether the character before the current position can't be a word character. The unanchored start of a Pattern can follow anything
+		private boolean bounded = false;
+
+		// Type of the last atom parsed that isn't a literal character
+		private AtomType atomType = AtomType.other;
+
+		private LiteralParser(String pattern) {
+			this.pattern = pattern;
+		}
+
+		// Parses alternatives until the end of the current group. If there's more than one, no literal is required by all of them
+		private List<RequiredLiteral> parseAlternatives() {
+			boolean startBounded = bounded;
+			List<RequiredLiteral> requiredLiterals = parseSequence();
+			boolean endBounded = bounded;
+			boolean alternation = false;
+
+			while (position < pattern.length() && pattern.charAt(position) == '|') {
+				position++;
+				alternation = true;
+				bounded = startBounded;
+				parseSequence();
+				endBounded &= bounded;
+			}
+
+			bounded = endBounded;
+			return alternation ? new ArrayList<>() : requiredLiterals;
+		}
+
+		// Parses a sequence of atoms, collecting the runs of consecutive required characters and the literals required by its groups
+		private List<RequiredLiteral> parseSequence() {
+			List<RequiredLiteral> requiredLiterals = new ArrayList<>();
+			StringBuilder run = new StringBuilder();
+			boolean runBounded = false;
+
+			while (position < pattern.length()) {
+				char c = pattern.charAt(position);
+				if (c == ')' || c == '|') break;
+
+				boolean before = bounded;
+				if (c == '(') {
+					// A group breaks the current run, and its literals are required only if it can't be skipped.
+					// A repeated group can end anywhere inside it, so nothing is known about the character before the next atom
+					flush(run, runBounded, false, requiredLiterals);
+					List<RequiredLiteral> groupLiterals = parseGroup();
+					int quantifier = parseQuantifier();
+					if (quantifier == NO_QUANTIFIER || quantifier == REPEATED) requiredLiterals.addAll(groupLiterals);
+					if (quantifier == OPTIONAL) bounded = before && bounded;
+					else if (quantifier != NO_QUANTIFIER) bounded = false;
+					continue;
+				}
+
+				// Otherwise, we read a single atom, which is a literal character or something matching different characters
+				Character literal = parseAtom();
+
+				if (literal == null) {
+					// Boundaries and non-word atoms that are always matched tell that the character after the run can't be a word character
+					int quantifier = parseQuantifier();
+					boolean nonWord = atomType != AtomType.other;
+					boolean required = quantifier == NO_QUANTIFIER || quantifier == REPEATED;
+					flush(run, runBounded, nonWord && required, requiredLiterals);
+					bounded = nonWord && (required || before);
+				} else {
+					if (run.isEmpty()) runBounded = before;
+					run.append(literal);
+					bounded = !CodeLexer.isWordChar(literal);
+
+					// A quantified character can be repeated, so the run can't continue after it. If it can be skipped, it isn't required either
+					if (position < pattern.length() && isQuantifierStart(pattern.charAt(position))) {
+						int quantifier = parseQuantifier();
+						if (quantifier == OPTIONAL || quantifier == OPTIONAL_REPEATED) {
+							run.setLength(run.length() - 1);
+							bounded = bounded && before;
+						}
+						flush(run, runBounded, false, requiredLiterals);
+					}
+				}
+			}
+
+			flush(run, runBounded, false, requiredLiterals);
+			return requiredLiterals;
+		}
+
+		// Parses a group, returning the literals its content requires. Lookarounds don't consume characters, so their content is ignored
+		private List<RequiredLiteral> parseGroup() {
+			position++;
+			boolean lookaround = false;
+			boolean before = bounded;
+
+			if (pattern.startsWith("?", position)) {
+				if (pattern.startsWith("?:", position) || pattern.startsWith("?>", position)) {
+					position += 2;
+				} else if (pattern.startsWith("?=", position) || pattern.startsWith("?!", position)) {
+					position += 2;
+					lookaround = true;
+				} else if (pattern.startsWith("?<=", position) || pattern.startsWith("?<!", position)) {
+					position += 3;
+					lookaround = true;
+				} else if (pattern.startsWith("?<", position)) {
+					// Named group
+					int end = pattern.indexOf('>', position);
+					if (end == -1) throw new IllegalArgumentException();
+					position = end + 1;
+				} else {
+					// Inline flags, that can only be the ones not changing literals, as the others have been excluded
+					while (position < pattern.length() && pattern.charAt(position) != ')' && pattern.charAt(position) != ':') position++;
+					if (position < pattern.length()) position++;
+					if (pattern.charAt(position - 1) == ')') return new ArrayList<>();
+				}
+			}
+
+			List<RequiredLiteral> groupLiterals = parseAlternatives();
+			if (position >= pattern.length() || pattern.charAt(position) != ')') throw new IllegalArgumentException();
+			position++;
+
+			if (!lookaround) return groupLiterals;
+			bounded = before;
+			return new ArrayList<>();
+		}
+
+		// Parses an atom outside of groups, returning its character if it matches only that character, or null otherwise
+		private Character parseAtom() {
+			char c = pattern.charAt(position++);
+			atomType = AtomType.other;
+
+			switch (c) {
+				case '\\' -> {
+					if (position >= pattern.length()) throw new IllegalArgumentException();
+					char escaped = pattern.charAt(position++);
+
+					// Escaped symbols are literal characters
+					if (!Character.isLetterOrDigit(escaped)) return escaped;
+
+					// Escapes followed by an argument are skipped with it, while the ones with uncommon arguments aren't handled
+					if (escaped == 'p' || escaped == 'P') {
+						if (pattern.startsWith("{", position)) {
+							int end = pattern.indexOf('}', position);
+							if (end == -1) throw new IllegalArgumentException();
+							position = end + 1;
+						} else {
+							position++;
+						}
+					} else if (Character.isDigit(escaped) || "xucNkE".indexOf(escaped) != -1) {
+						throw new IllegalArgumentException();
+					} else if (escaped == 'b') {
+						atomType = AtomType.boundary;
+					} else if (escaped == 's' || escaped == 'W') {
+						atomType = AtomType.nonWord;
+					}
+					return null;
+				}
+				case '[' -> {
+					skipClass();
+					return null;
+				}
+				case '^', '$' -> {
+					atomType = AtomType.boundary;
+					return null;
+				}
+				case '.' -> {
+					return null;
+				}
+				case '*', '+', '?', '{' -> throw new IllegalArgumentException();
+				default -> {
+					return c;
+				}
+			}
+		}
+
+		// Helper function to skip a character class, including its nested classes
+		private void skipClass() {
+			int depth = 1;
+
+			// A closing bracket right after the opening one is a literal inside the class
+			if (pattern.startsWith("^", position)) position++;
+			if (pattern.startsWith("]", position)) position++;
+
+			while (position < pattern.length() && depth > 0) {
+				char c = pattern.charAt(position++);
+				if (c == '\\') position++;
+				else if (c == '[') depth++;
+				else if (c == ']') depth--;
+			}
+
+			if (depth > 0) throw new IllegalArgumentException();
+		}
+
+		// Parses the quantifier following an atom, if any, returning its kind
+		private int parseQuantifier() {
+			if (position >= pattern.length() || !isQuantifierStart(pattern.charAt(position))) return NO_QUANTIFIER;
+			char c = pattern.charAt(position++);
+
+			int quantifier;
+			if (c == '{') {
+				int end = pattern.indexOf('}', position);
+				if (end == -1) throw new IllegalArgumentException();
+				String[] bounds = pattern.substring(position, end).split(",", -1);
+				String minimum = bounds[0].trim();
+				if (minimum.isEmpty() || !minimum.chars().allMatch(Character::isDigit)) throw new IllegalArgumentException();
+				boolean once = bounds.length == 2 && bounds[1].trim().equals("1");
+				if (Integer.parseInt(minimum) == 0) quantifier = once ? OPTIONAL : OPTIONAL_REPEATED;
+				else quantifier = REPEATED;
+				position = end + 1;
+			} else {
+				quantifier = switch (c) {
+					case '?' -> OPTIONAL;
+					case '+' -> REPEATED;
+					default -> OPTIONAL_REPEATED;
+				};
+			}
+
+			// Lazy and possessive modifiers don't change which characters are required
+			if (position < pattern.length() && (pattern.charAt(position) == '?' || pattern.charAt(position) == '+')) position++;
+			return quantifier;
+		}
+
+		private static boolean isQuantifierStart(char c) {
+			return c == '*' || c == '+' || c == '?' || c == '{';
+		}
+
+		// Helper function to add the current run to the required literals, starting a new one
+		private static void flush(StringBuilder run, boolean boundedStart, boolean boundedEnd, List<RequiredLiteral> requiredLiterals) {
+			if (!run.isEmpty()) requiredLiterals.add(new RequiredLiteral(run.toString(), boundedStart, boundedEnd));
+			run.setLength(0);
+		}
+	}
+}
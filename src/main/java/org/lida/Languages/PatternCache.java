@@ -0,0 +1,82 @@
+package org.lida.Languages;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+
+// Class keeping the most recently used compiled Patterns, so that the rules and conditions patterns are compiled only once
+// for every distinct string, instead of once for every line or target Entity
+public class PatternCache {
+
+	// Maximum number of compiled Patterns kept. Patterns with Variables swapped are specific to a file, so the least recently used ones are discarded
+	private static final int MAX_PATTERNS = 4096;
+
+	// Placeholder stored for the strings that aren't valid Patterns, so that their compilation isn't tried again
+	private static final Pattern INVALID_PATTERN = Pattern.compile("");
+
+	// Mapping of every Pattern string to its compiled Pattern, in access order to discard the least recently used one
+	private static final Map<String, Pattern> stringToPattern = new LinkedHashMap<>(MAX_PATTERNS, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+			return size() > MAX_PATTERNS;
+		}
+	};
+
+	// Placeholder stored for the strings that the linear engine can't compile
+	private static final LinearRegex UNSUPPORTED_REGEX = LinearRegex.compile("");
+
+	// Mapping of every Pattern string to its compiled linear automaton, in access order like the Patterns
+	private static final Map<String, LinearRegex> stringToLinearRegex = new LinkedHashMap<>(MAX_PATTERNS, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, LinearRegex> eldest) {
+			return size() > MAX_PATTERNS;
+		}
+	};
+
+	// Returns the compiled Pattern of a string, compiling it only if it isn't already cached.
+	// Like Pattern.compile, it throws a PatternSyntaxException if the string isn't a valid Pattern
+	public static Pattern compile(String regex) {
+		Pattern pattern;
+		synchronized (stringToPattern) {
+			pattern = stringToPattern.get(regex);
+		}
+
+		// The compilation is done outside the lock, so different threads can compile different Patterns at the same time
+		if (pattern == null) {
+			try {
+				pattern = Pattern.compile(regex);
+			} catch (PatternSyntaxException e) {
+				pattern = INVALID_PATTERN;
+			}
+
+			synchronized (stringToPattern) {
+				stringToPattern.put(regex, pattern);
+			}
+		}
+
+		if (pattern == INVALID_PATTERN) throw new PatternSyntaxException("Invalid pattern", regex, -1);
+		return pattern;
+	}
+
+	// Returns the linear automaton of a string, compiling it only if it isn't already cached.
+	// It returns null if the string uses constructs not supported by the linear engine, so java.util.regex must be used
+	public static LinearRegex compileLinear(String regex) {
+		LinearRegex linearRegex;
+		synchronized (stringToLinearRegex) {
+			linearRegex = stringToLinearRegex.get(regex);
+		}
+
+		if (linearRegex == null) {
+			linearRegex = LinearRegex.compile(regex);
+			if (linearRegex == null) linearRegex = UNSUPPORTED_REGEX;
+
+			synchronized (stringToLinearRegex) {
+				stringToLinearRegex.put(regex, linearRegex);
+			}
+		}
+
+		return (linearRegex == UNSUPPORTED_REGEX) ? null : linearRegex;
+	}
+}
@@ -0,0 +1,81 @@
+package org.lida.Languages;
+
+import java.util.Set;
+
+
+// Interface of a rule condition, parsed when loading the rules so that the link doesn't split and check the condition string for every target Entity
+public sealed interface RuleCondition {
+
+	// Operations of the two-words conditions, between the same Variable of the two Entities
+	Set<String> VARIABLE_OPERATIONS = Set.of("==", "contains");
+
+	// Operations of the three-words conditions, between two values
+	Set<String> COMPARISON_OPERATIONS = Set.of("==", "contains", "startswith", "endswith");
+
+	// Condition comparing a Variable of the Entity with the same Variable of the target Entity, such as "== ||Package||"
+	record VariableCondition(String operation, RuleTemplate variable, boolean inverted) implements RuleCondition {
+		/*
+		The data inside the record are:
+			operation between the two values ("==" or "contains"),
+			template of the Variable name,
+			inverted flag specifying if the condition started with "not"
+		 */
+	}
+
+	// Condition comparing two values, such as "!!PATHOFDIRECTORY!! contains ||PATHOFDIRECTORY||"
+	record ComparisonCondition(RuleTemplate first, String operation, RuleTemplate second, boolean inverted) implements RuleCondition {
+		/*
+		The data inside the record are:
+			template of the first value,
+			operation between the two values ("==", "contains", "startswith" or "endswith"),
+			template of the second value,
+			inverted flag specifying if the condition started with "not"
+		 */
+	}
+
+	// Condition of a single Variable or rule name, or a Pattern to find inside the line. They are checked in this order
+	record NameCondition(String name, String appliedRule, boolean onTarget, RuleTemplate pattern, boolean inverted) implements RuleCondition {
+		/*
+		The data inside the record are:
+			whole condition, used as a Variable name that must be equal in the two Entities,
+			name of the rule that must have been applied between the two Entities (null if the condition isn't between margins),
+			target flag specifying if the rule must have been applied by the target Entity ("!!") instead of the Entity ("||"),
+			template of the Pattern to find inside the line (null if the condition isn't between quotation marks),
+			inverted flag specifying if the condition started with "not"
+		 */
+	}
+
+	// Parses a condition string, keeping the same meaning of the words checks that were done during the link
+	static RuleCondition parse(String condition) {
+
+		// First, we split the conditions in its different parts. If the first word is "not", the condition will be inverted
+		String[] tokens = condition.split(" ");
+		boolean inverted = tokens[0].equals("not");
+		int first = inverted ? 1 : 0;
+		int length = tokens.length - first;
+
+		// For two-words conditions, there should be an expression and a Variable
+		if (length == 2 && VARIABLE_OPERATIONS.contains(tokens[first]))
+			return new VariableCondition(tokens[first], RuleTemplate.parseOperand(tokens[first + 1]), inverted);
+
+		// For three-words conditions, there should be two values and an expression in the middle
+		if (length == 3 && COMPARISON_OPERATIONS.contains(tokens[first + 1]))
+			return new ComparisonCondition(RuleTemplate.parseOperand(tokens[first]), tokens[first + 1], RuleTemplate.parseOperand(tokens[first + 2]), inverted);
+
+		// Otherwise, the whole condition is a Variable or rule name, or a Pattern. They can contain spaces, so the words aren't used
+		String appliedRule = null;
+		boolean onTarget = false;
+		if (condition.length() >= 4 && condition.startsWith("||") && condition.endsWith("||")) {
+			appliedRule = condition.substring(2, condition.length() - 2);
+		} else if (condition.length() >= 4 && condition.startsWith("!!") && condition.endsWith("!!")) {
+			appliedRule = condition.substring(2, condition.length() - 2);
+			onTarget = true;
+		}
+
+		RuleTemplate pattern = null;
+		if (condition.length() >= 2 && condition.startsWith("\"") && condition.endsWith("\""))
+			pattern = RuleTemplate.parseOperand(condition.substring(1, condition.length() - 1));
+
+		return new NameCondition(condition, appliedRule, onTarget, pattern, inverted);
+	}
+}
@@ -0,0 +1,198 @@
+package org.lida.Languages;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+// Class collecting the execution profile of the rules during an analysis, to find which rules make a language slow without the DEBUG prints.
+// Each profiled analysis has its own profile inside its context, so the tasks of another analysis can't add to it.
+// For each rule, it counts the lines on which it has been checked, its matches, the time spent running its pattern, its failed conditions
+// and its slowest lines. The counters are LongAdders, so the threads of the rules pool add to their own cells instead of contending on the same value
+public class RuleProfiler {
+
+	// Number of slowest lines kept for each rule
+	private static final int SLOWEST_LINES = 5;
+
+	// Maximum number of characters kept of each slowest line
+	private static final int MAX_LINE_LENGTH = 200;
+
+	// Record storing one of the slowest lines of a rule
+	public record SlowLine(long nanoseconds, String path, String line) {
+		/*
+		The data inside the record are:
+			time spent running the rule pattern on the line,
+			path of the file containing the line,
+			code line, without comments and code texts
+		 */
+	}
+
+	// Class storing the counters of a single rule
+	public static class RuleStats {
+		private final String language;
+		private final LanguageRule rule;
+
+		private final LongAdder evaluations = new LongAdder();
+		private final LongAdder matches = new LongAdder();
+		private final LongAdder nanoseconds = new LongAdder();
+		private final LongAdder conditionFailures = new LongAdder();
+
+		// Slowest lines sorted by decreasing time. The time of the fastest one is kept apart, so the faster lines are discarded without locking
+		private final List<SlowLine> slowestLines = new ArrayList<>();
+		private volatile long slowLineThreshold = 0;
+
+		private RuleStats(String language, LanguageRule rule) {
+			this.language = language;
+			this.rule = rule;
+		}
+
+		// Adds a check of the rule on a line, with the time spent running its pattern (0 if another rule with the same pattern already ran it)
+		public void addEvaluation(long time, String path, String line) {
+			evaluations.increment();
+			if (time == 0) return;
+
+			nanoseconds.add(time);
+			if (time <= slowLineThreshold) return;
+
+			synchronized (slowestLines) {
+				int position = 0;
+				while (position < slowestLines.size() && slowestLines.get(position).nanoseconds() >= time) position++;
+				if (position >= SLOWEST_LINES) return;
+
+				slowestLines.add(position, new SlowLine(time, path, (line.length() > MAX_LINE_LENGTH) ? line.substring(0, MAX_LINE_LENGTH) + "..." : line));
+				if (slowestLines.size() > SLOWEST_LINES) slowestLines.removeLast();
+				if (slowestLines.size() == SLOWEST_LINES) slowLineThreshold = slowestLines.getLast().nanoseconds();
+			}
+		}
+
+		public void addMatch() {
+			matches.increment();
+		}
+
+		public void addConditionFailure() {
+			conditionFailures.increment();
+		}
+
+		public String getLanguage() {
+			return language;
+		}
+
+		public LanguageRule getRule() {
+			return rule;
+		}
+
+		public long getEvaluations() {
+			return evaluations.sum();
+		}
+
+		public long getMatches() {
+			return matches.sum();
+		}
+
+		public long getNanoseconds() {
+			return nanoseconds.sum();
+		}
+
+		public long getConditionFailures() {
+			return conditionFailures.sum();
+		}
+
+		public List<SlowLine> getSlowestLines() {
+			synchronized (slowestLines) {
+				return List.copyOf(slowestLines);
+			}
+		}
+	}
+
+	// --------------------- Profile data ---------------------
+
+	// Mapping of every language to the counters of its rules, in the same order of its rules list
+	private final Map<String, RuleStats[]> languageToStats = new ConcurrentHashMap<>();
+
+	// --------------------- Public functions ---------------------
+
+	// Returns true if at least a rule has been checked
+	public boolean hasProfile() {
+		return !languageToStats.isEmpty();
+	}
+
+	// Returns the counters of the rules of a language, in the same order of its rules list
+	public RuleStats[] getStats(String language, List<LanguageRule> rules) {
+		return languageToStats.computeIfAbsent(language, k -> {
+			RuleStats[] stats = new RuleStats[rules.size()];
+			for (int i = 0; i < stats.length; i++) stats[i] = new RuleStats(language, rules.get(i));
+			return stats;
+		});
+	}
+
+	// Returns the counters of every checked rule, starting from the one that took the most time
+	public List<RuleStats> getProfile() {
+		List<RuleStats> profile = new ArrayList<>();
+		for (RuleStats[] stats : languageToStats.values()) {
+			for (RuleStats ruleStats : stats) {
+				if (ruleStats.getEvaluations() > 0 || ruleStats.getConditionFailures() > 0) profile.add(ruleStats);
+			}
+		}
+
+		profile.sort(Comparator.comparingLong(RuleStats::getNanoseconds).reversed());
+		return profile;
+	}
+
+	// Returns the profile as a readable report: a line for every rule, then the slowest lines of the rules that took the most time
+	public String getReport() {
+		List<RuleStats> profile = getProfile();
+		StringBuilder report = new StringBuilder();
+
+		report.append(String.format("%-12s %-10s %-32s %12s %10s %8s %12s %10s %10s%n", "Language", "Type", "Rule", "Checks", "Matches", "Hits", "Time (ms)", "Avg (ns)", "Failed"));
+		for (RuleStats stats : profile) {
+			long evaluations = stats.getEvaluations();
+			report.append(String.format("%-12s %-10s %-32s %12d %10d %7.2f%% %12.2f %10d %10d%n",
+					stats.getLanguage(), stats.getRule().type(), stats.getRule().name(), evaluations, stats.getMatches(),
+					(evaluations == 0) ? 0.0 : stats.getMatches() * 100.0 / evaluations,
+					stats.getNanoseconds() / 1_000_000.0, (evaluations == 0) ? 0 : stats.getNanoseconds() / evaluations, stats.getConditionFailures()));
+		}
+
+		// The slowest lines are shown only for the rules that took the most time, as the others aren't worth optimizing
+		for (RuleStats stats : profile.subList(0, Math.min(10, profile.size()))) {
+			if (stats.getSlowestLines().isEmpty()) continue;
+
+			report.append(System.lineSeparator()).append("Slowest lines of ").append(stats.getLanguage()).append(" ").append(stats.getRule().name()).append(":").append(System.lineSeparator());
+			for (SlowLine slowLine : stats.getSlowestLines()) {
+				report.append(String.format("  %10d ns  %s: %s%n", slowLine.nanoseconds(), slowLine.path(), slowLine.line()));
+			}
+		}
+
+		return report.toString();
+	}
+
+	// Writes the profile on a file as comma-separated values, with a row for every rule and its slowest lines in the last columns
+	public void export(File file) throws IOException {
+		try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+			writer.println("language,type,rule,pattern,checks,matches,nanoseconds,condition failures,slowest lines");
+
+			for (RuleStats stats : getProfile()) {
+				StringBuilder row = new StringBuilder();
+				row.append(csv(stats.getLanguage())).append(',').append(stats.getRule().type()).append(',').append(csv(stats.getRule().name())).append(',')
+						.append(csv(stats.getRule().pattern())).append(',').append(stats.getEvaluations()).append(',').append(stats.getMatches()).append(',')
+						.append(stats.getNanoseconds()).append(',').append(stats.getConditionFailures());
+
+				for (SlowLine slowLine : stats.getSlowestLines()) {
+					row.append(',').append(csv(slowLine.nanoseconds() + " ns " + slowLine.path() + ": " + slowLine.line()));
+				}
+				writer.println(row);
+			}
+		}
+	}
+
+	// --------------------- Helper functions ---------------------
+
+	// Helper function to quote a comma-separated value, doubling its quotation marks
+	private static String csv(String value) {
+		if (value == null) return "";
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+}
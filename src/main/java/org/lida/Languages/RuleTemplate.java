@@ -0,0 +1,172 @@
+package org.lida.Languages;
+
+import org.lida.Entity.AnalysisEntity;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+
+// Record storing a string of a rule with its Variables markers ("||VARIABLE||" and "!!VARIABLE!!") already found when loading the rules,
+// so that the Variables values can be swapped without parsing the string again for every line or target Entity
+public record RuleTemplate(List<Segment> segments, boolean pattern) {
+	/*
+	The data inside the record are:
+		segments of the string in order, each being a text or a Variable marker,
+		pattern flag specifying if the string is a Pattern between quotation marks, whose caught string is the value of the template
+	 */
+
+	// Parts of a template: a text kept as it is, or a Variable of the Entity ("||") or of the target Entity ("!!")
+	public sealed interface Segment permits Text, VariableMarker {}
+
+	public record Text(String text) implements Segment {}
+
+	public record VariableMarker(String name, boolean target) implements Segment {}
+
+	// Names of the global variables, whose values come from the Entity's path instead of its Variables
+	public static final Set<String> GLOBAL_VARIABLES = Set.of("NAMEOFFILE", "NAMEOFFILEONLY", "PATHOFFILE", "PATHOFFILEONLY", "NAMEOFDIRECTORY", "PATHOFDIRECTORY");
+
+	// --------------------- Parsing ---------------------
+
+	// Parses a string having only the Entity's Variables, like the rules patterns and values
+	public static RuleTemplate parse(String string) {
+		List<Segment> segments = new ArrayList<>();
+		split(string, "||", false, segments);
+		return new RuleTemplate(merge(segments), false);
+	}
+
+	// Parses a condition operand, which can have the Variables of both Entities and be a Pattern between quotation marks
+	public static RuleTemplate parseOperand(String string) {
+		boolean pattern = string.length() >= 2 && string.startsWith("\"") && string.endsWith("\"");
+		if (pattern) string = string.substring(1, string.length() - 1);
+
+		// The Entity's Variables are swapped first, then the target ones are searched inside the remaining text
+		List<Segment> localSegments = new ArrayList<>();
+		split(string, "||", false, localSegments);
+
+		List<Segment> segments = new ArrayList<>();
+		for (Segment segment : localSegments) {
+			if (segment instanceof Text(String text)) split(text, "!!", true, segments);
+			else segments.add(segment);
+		}
+
+		return new RuleTemplate(merge(segments), pattern);
+	}
+
+	// Helper function to split a string on the given margins, with the same results of the old swapping of the markers
+	private static void split(String string, String margins, boolean target, List<Segment> segments) {
+		int index = 0;
+		while (index < string.length()) {
+
+			// We search for the starting margins. If there are none, the rest of the string is a text
+			int start = string.indexOf(margins, index);
+			if (start == -1) {
+				segments.add(new Text(string.substring(index)));
+				break;
+			}
+			segments.add(new Text(string.substring(index, start)));
+
+			// We search for the ending margins. Without them, the rest of the string is appended again after the text before the start
+			int end = string.indexOf(margins, start + margins.length());
+			if (end == -1) {
+				segments.add(new Text(string.substring(index)));
+				break;
+			}
+
+			segments.add(new VariableMarker(string.substring(start + margins.length(), end), target));
+			index = end + margins.length();
+		}
+	}
+
+	// Helper function to join the consecutive texts, dropping the empty ones
+	private static List<Segment> merge(List<Segment> segments) {
+		List<Segment> result = new ArrayList<>();
+		StringBuilder text = new StringBuilder();
+
+		for (Segment segment : segments) {
+			if (segment instanceof Text(String segmentText)) {
+				text.append(segmentText);
+				continue;
+			}
+			if (!text.isEmpty()) result.add(new Text(text.toString()));
+			text.setLength(0);
+			result.add(segment);
+		}
+		if (!text.isEmpty()) result.add(new Text(text.toString()));
+
+		return List.copyOf(result);
+	}
+
+	// --------------------- Public functions ---------------------
+
+	// Returns true if the template has Variables markers, so its value depends on the Entities
+	public boolean hasVariables() {
+		return segments.stream().anyMatch(segment -> segment instanceof VariableMarker);
+	}
+
+	// Returns true if the template has Variables markers of the target Entity
+	public boolean hasTargetVariables() {
+		return segments.stream().anyMatch(segment -> segment instanceof VariableMarker(String _, boolean target) && target);
+	}
+
+	// Returns the name of the target Variable if the template is only that Variable, or null otherwise
+	public String getTargetVariable() {
+		if (pattern || segments.size() != 1 || !(segments.getFirst() instanceof VariableMarker(String name, boolean target)) || !target) return null;
+		return name;
+	}
+
+	// Returns the string with the Variables markers swapped with their values. Pattern templates return the Pattern without quotation marks
+	public String apply(AnalysisEntity entity, AnalysisEntity targetEntity) {
+		if (segments.isEmpty()) return "";
+		if (segments.size() == 1 && segments.getFirst() instanceof Text(String text)) return text;
+
+		StringBuilder result = new StringBuilder();
+		for (Segment segment : segments) {
+			switch (segment) {
+				case Text(String text) -> result.append(text);
+				case VariableMarker(String name, boolean target) -> {
+					String value = getVariableValue(name, target ? targetEntity : entity);
+					if (value != null) result.append(value);
+				}
+			}
+		}
+		return result.toString();
+	}
+
+	// Swaps the Entity's Variables markers inside a string found while reading a file, which can't be parsed ahead of time
+	public static String swap(String string, AnalysisEntity entity) {
+		return string.contains("||") ? parse(string).apply(entity, null) : string;
+	}
+
+	// Returns the value of a Variable of an Entity, or null if there isn't one. First we check for global variables, then for Entity's Variables
+	public static String getVariableValue(String name, AnalysisEntity entity) {
+		switch (name) {
+			case "NAMEOFFILE" -> {
+				return entity.getName();
+			}
+			case "NAMEOFFILEONLY" -> {
+				return entity.getNameOnly();
+			}
+			case "PATHOFFILE" -> {
+				return entity.getPath().replace(File.separatorChar, '/');
+			}
+			case "PATHOFFILEONLY" -> {
+				String resultString = entity.getPath().substring(0, entity.getPath().length() - entity.getExtension().length() - 1);
+				return resultString.replace(File.separatorChar, '/');
+			}
+			case "NAMEOFDIRECTORY" -> {
+				String temp = entity.getPath().replace(entity.getName(), "");
+				temp = temp.substring(0, temp.length() - 1);
+				return temp.substring(temp.lastIndexOf(File.separatorChar) + 1);
+			}
+			case "PATHOFDIRECTORY" -> {
+				return entity.getPath().replace(File.separator + entity.getName(), "");
+			}
+			default -> {
+				// If the variable is not global, we search its value from the Entity's Variables
+				return entity.getVariableValue(name);
+			}
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package org.lida.Languages;
+
+
+// Record storing the constant value of a rule, parsed when loading the rules: a single value, or two values and an operation between them
+public record RuleValue(RuleTemplate template, boolean single, RuleTemplate firstOperand, String operation, RuleTemplate secondOperand) {
+	/*
+	The data inside the record are:
+		template of the whole value,
+		single flag specifying if the value is a single word or a string between quotation marks,
+		template of the first value of the operation (null if there isn't an operation),
+		operation between the two values (null if there isn't an operation),
+		template of the second value of the operation (null if there isn't an operation)
+	 */
+
+	// Parses a constant value. Values that aren't single and don't have three words have no operation
+	public static RuleValue parse(String constantValue) {
+		String[] tokens = constantValue.split("\\s");
+		boolean single = (constantValue.startsWith("\"") && constantValue.endsWith("\"")) || tokens.length == 1;
+
+		if (!single && tokens.length == 3)
+			return new RuleValue(RuleTemplate.parse(constantValue), false, RuleTemplate.parse(tokens[0]), tokens[1], RuleTemplate.parse(tokens[2]));
+
+		return new RuleValue(RuleTemplate.parse(constantValue), single, null, null, null);
+	}
+}
@@ -0,0 +1,17 @@
+package org.lida.Languages;
+
+
+import java.util.List;
+
+// Record storing the result of reading a code file once, so that the analysis phases don't need to read it again
+public record SourceFile(int lineCount, List<String> codeLines, int[] tokens, int[][] tokenPieces, int[] lineEnds, int[] regionEnds) {
+	/*
+	The data inside the record are:
+		total number of lines inside the file,
+		non-empty lines of the file with comments and code text removed (empty if the language has no rules),
+		token stream of the code lines, as the ids interned by the file's table of the language's lexer,
+		pieces of the rules patterns found inside each token, indexed by the token id,
+		position inside the token stream after the last token of each code line,
+		number of code lines inside each region of the language's rules, after which the rules of the region aren't applied anymore
+	 */
+}
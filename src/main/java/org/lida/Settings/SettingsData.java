@@ -1,5 +1,8 @@
 package org.lida.Settings;
 
+import java.util.ArrayList;
+import java.util.List;
+
 
 // Class to store the data inside the settings file
 public class SettingsData {
@@ -62,4 +65,101 @@ public class SettingsData {
 	public void setDependencyGraphLayout(String dependencyGraphLayout) {
 		this.dependencyGraphLayout = dependencyGraphLayout;
 	}
+
+
+	// Number of threads used for the rules processing during the analysis. If 0 or less, one thread for each available core is used
+	private int analysisParallelism;
+
+	public int getAnalysisParallelism() {
+		return analysisParallelism;
+	}
+
+	public void setAnalysisParallelism(int analysisParallelism) {
+		this.analysisParallelism = analysisParallelism;
+	}
+
+
+	// Glob patterns of the files and directories excluded from the analysis. Patterns without '/' match the name, the others the path from the analyzed directory.
+	// The fields added after the first release start with the values of default_settings.json, so the settings files written before them get the same defaults
+	private List<String> excludedPatterns = new ArrayList<>(List.of(".git", "node_modules"));
+
+	public List<String> getExcludedPatterns() {
+		return excludedPatterns;
+	}
+
+	public void setExcludedPatterns(List<String> excludedPatterns) {
+		this.excludedPatterns = excludedPatterns;
+	}
+
+
+	// Flag to exclude from the analysis the files ignored by the .gitignore files
+	private boolean useGitignore = true;
+
+	public boolean getUseGitignore() {
+		return useGitignore;
+	}
+
+	public void setUseGitignore(boolean useGitignore) {
+		this.useGitignore = useGitignore;
+	}
+
+
+	// Maximum size in bytes of the analyzed files. If 0 or less, there is no limit
+	private long maxFileSize;
+
+	public long getMaxFileSize() {
+		return maxFileSize;
+	}
+
+	public void setMaxFileSize(long maxFileSize) {
+		this.maxFileSize = maxFileSize;
+	}
+
+
+	// Maximum depth of the analyzed directory subtree. If 0 or less, there is no limit
+	private int maxScanDepth;
+
+	public int getMaxScanDepth() {
+		return maxScanDepth;
+	}
+
+	public void setMaxScanDepth(int maxScanDepth) {
+		this.maxScanDepth = maxScanDepth;
+	}
+
+
+	// Flag to store the analysis results on disk, so the unchanged files aren't read again when the same directory is analyzed
+	private boolean useAnalysisCache = true;
+
+	public boolean getUseAnalysisCache() {
+		return useAnalysisCache;
+	}
+
+	public void setUseAnalysisCache(boolean useAnalysisCache) {
+		this.useAnalysisCache = useAnalysisCache;
+	}
+
+
+	// Flag to watch the analyzed directory, updating the analysis when its files change
+	private boolean watchDirectory;
+
+	public boolean getWatchDirectory() {
+		return watchDirectory;
+	}
+
+	public void setWatchDirectory(boolean watchDirectory) {
+		this.watchDirectory = watchDirectory;
+	}
+
+
+	// Flag to profile the rules during the analysis, measuring their checks, matches, time and failed conditions
+	private boolean profileRules;
+
+	public boolean getProfileRules() {
+		return profileRules;
+	}
+
+	public void setProfileRules(boolean profileRules) {
+		this.profileRules = profileRules;
+	}
 }
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.Objects;
 
 
@@ -149,4 +150,90 @@ public class SettingsHandler {
 		settings.setDependencyGraphLayout(layout);
 		writeSettings();
 	}
+
+
+	// Setting for the number of threads used by the analysis rules processing (0 for one thread for each available core)
+	public static int getAnalysisParallelism() {
+		checkForInstance();
+		return settings.getAnalysisParallelism();
+	}
+
+	public static void setAnalysisParallelism(int parallelism) {
+		checkForInstance();
+		settings.setAnalysisParallelism(parallelism);
+		writeSettings();
+	}
+
+
+	// Setting for the glob patterns of the files and directories excluded from the analysis. It's changed by editing the settings file
+	public static List<String> getExcludedPatterns() {
+		checkForInstance();
+		return settings.getExcludedPatterns();
+	}
+
+
+	// Setting used for excluding from the analysis the files ignored by the .gitignore files
+	public static boolean getUseGitignore() {
+		checkForInstance();
+		return settings.getUseGitignore();
+	}
+
+	public static void toggleUseGitignore() {
+		checkForInstance();
+		settings.setUseGitignore(!settings.getUseGitignore());
+		writeSettings();
+	}
+
+
+	// Setting for the maximum size in bytes of the analyzed files (0 for no limit). It's changed by editing the settings file
+	public static long getMaxFileSize() {
+		checkForInstance();
+		return settings.getMaxFileSize();
+	}
+
+
+	// Setting for the maximum depth of the analyzed directory subtree (0 for no limit). It's changed by editing the settings file
+	public static int getMaxScanDepth() {
+		checkForInstance();
+		return settings.getMaxScanDepth();
+	}
+
+
+	// Setting used for storing the analysis results on disk, to read again only the changed files
+	public static boolean getUseAnalysisCache() {
+		checkForInstance();
+		return settings.getUseAnalysisCache();
+	}
+
+	public static void toggleUseAnalysisCache() {
+		checkForInstance();
+		settings.setUseAnalysisCache(!settings.getUseAnalysisCache());
+		writeSettings();
+	}
+
+
+	// Setting used for watching the analyzed directory and updating the analysis when its files change
+	public static boolean getWatchDirectory() {
+		checkForInstance();
+		return settings.getWatchDirectory();
+	}
+
+	public static void toggleWatchDirectory() {
+		checkForInstance();
+		settings.setWatchDirectory(!settings.getWatchDirectory());
+		writeSettings();
+	}
+
+
+	// Setting used for profiling the rules during the analysis, to find the slowest ones
+	public static boolean getProfileRules() {
+		checkForInstance();
+		return settings.getProfileRules();
+	}
+
+	public static void toggleProfileRules() {
+		checkForInstance();
+		settings.setProfileRules(!settings.getProfileRules());
+		writeSettings();
+	}
 }
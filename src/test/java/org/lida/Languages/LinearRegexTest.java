@@ -0,0 +1,263 @@
+package org.lida.Languages;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.lida.Functionality.DirectoryAnalyzer;
+import org.lida.Functionality.FileTypeData;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+// Test comparing LinearRegex with java.util.regex: the caught string of the first group, or the missing match, must be the same on every line.
+// It runs every pattern of the rules files that the linear engine compiles, and the constructs for which the engine has its own rules
+public class LinearRegexTest {
+
+	// Lines reaching the constructs of the rules patterns of every language, and the edge cases of anchors, boundaries and quantifiers
+	private static final List<String> SAMPLE_LINES = List.of(
+			"",
+			" ",
+			"package org.lida.Languages;",
+			"import java.util.List;",
+			"import java.util.*;",
+			"import static org.junit.jupiter.api.Assertions.*;",
+			"public class LinearRegex {",
+			"	public static final class Node extends Base implements First, Second {",
+			"protected static record Pair(int a, int b) {}",
+			"	private static final Map<String, List<Integer>> map = new HashMap<>();",
+			"	private final int[] operations;",
+			"	public List<String> getLines() {",
+			"	public static <T> T runOnApplicationThread(Callable<T> function) throws Exception {",
+			"		Matcher matcher = PatternCache.compile(pattern).matcher(\"\");",
+			"		return new LinearRegex(compiler.instructions, compiler.classes);",
+			"		String value = (a == null) ? b : a;",
+			"	void process(String line, int position, Map<String, Integer> counts)",
+			"	String name",
+			"	String name  ",
+			"	String name\r",
+			"	String name\n",
+			"	String name\r\n",
+			"	String name\n\n",
+			"	String name ",
+			"	int count = 0;\r\n",
+			"using System.Collections.Generic;",
+			"using static System.Math;",
+			"using Alias = Some.Namespace.Type;",
+			"namespace Lida.Analysis",
+			"public sealed class Reader : BaseReader, IReader, IDisposable",
+			"internal static async Task<int> ReadAsync(string path)",
+			"	public readonly Dictionary<string, int> counts;",
+			"	public virtual void Update() {",
+			"#include <stdio.h>",
+			"#include \"utils/strings.h\"",
+			"use std::collections::HashMap;",
+			"pub fn parse_line(line: &str) -> Option<String> {",
+			"pub struct Reader {",
+			"mod parser;",
+			"import React, { useState } from 'react';",
+			"import { First, Second } from \"../components/Button.tsx\";",
+			"import Default from './default';",
+			"const fs = require('fs');",
+			"const utils = require(\"../lib/utils.js\")",
+			"export default abstract class Component {",
+			"export interface Props {",
+			"export type Handler = (event: Event) => void;",
+			"describe('LinearRegex', () => {",
+			"from os import path",
+			"import os, sys",
+			"class Reader(BaseReader):",
+			"require 'json'",
+			"require_relative 'lib/reader'",
+			"load 'tasks/build.rb'",
+			"source ./scripts/build.sh",
+			"bash deploy.sh",
+			"eval \"$(cat env.sh)\"",
+			"extends Node2D",
+			"class_name Player",
+			"import (\n\t\"fmt\"\n)",
+			"with open(\"data.csv\", 'r') as file:",
+			"word_boundary wordboundary _under_ 42abc",
+			"aaa aab abab ababab",
+			"x.y.z Outer.Inner Outer.",
+			"àccented wörds ünicode ßtraße",
+			"tab\tseparated\tvalues",
+			"(a, b), (c, d)",
+			"List<Map<String, Integer>> nested;",
+			"//    comment    with    spaces",
+			"a".repeat(300),
+			"public ".repeat(50) + "class Repeated"
+	);
+
+	// Patterns of the constructs that the linear engine handles with its own rules: anchors, word boundaries,
+	// lazy and greedy quantifiers with their priorities, counted quantifiers and character classes
+	private static final List<String> CONSTRUCT_PATTERNS = List.of(
+			"(\\w+)$",
+			"(\\w+)\\s*$",
+			"^$",
+			"(.*)$",
+			"(\\w*)\\b",
+			"\\b(\\w+)\\b",
+			"\\B(\\w+)",
+			"(\\w+?)\\b",
+			"(.*?)\\s",
+			"(.*)\\s",
+			"(a|ab)(c|bcd)?",
+			"((?:ab)+?)",
+			"((?:ab)+)",
+			"(a*)?b",
+			"(?:(a)|b)*",
+			"((?:\\b\\w)+)",
+			"(\\w{2,3})",
+			"(\\w{2,3}?)",
+			"(\\w{2})",
+			"(\\w{2,})",
+			"([^\\s,]+)",
+			"([a-c\\d_-]+)",
+			"([\\W]+)",
+			"(\\S+)\\s+(\\S+)",
+			"x|(\\w+)",
+			"(?:^|\\s)(\\w+)",
+			"(.)"
+	);
+
+	// Constructs that the linear engine doesn't support, so their rules use java.util.regex instead.
+	// Loops that can match an empty string are rejected, as their priorities follow the special handling of the backtracking
+	private static final List<String> UNSUPPORTED_PATTERNS = List.of(
+			"(a*)*b",
+			"(a*)+",
+			"((?:a|)*)b",
+			"(a?)*?",
+			"a*+",
+			"(?<=\\()(\\w+)",
+			"new\\s+(\\w+)(?=\\()",
+			"(\\w)\\1",
+			"(?<name>\\w+)",
+			"(?i)class",
+			"[a-z&&[^e]]",
+			"[[a-z]]"
+	);
+
+	// --------------------- Tests ---------------------
+
+	@Test
+	public void rulesPatternsMatchLikeJavaRegex() throws IOException, URISyntaxException {
+		List<String> lines = getSampleLines();
+
+		// Patterns that the linear engine can't compile are run by java.util.regex, so there is nothing to compare
+		int comparedPatterns = 0;
+		for (String pattern : getRulesPatterns()) {
+			LinearRegex linearRegex = LinearRegex.compile(pattern);
+			if (linearRegex == null) continue;
+
+			assertSameMatches(pattern, linearRegex, lines);
+			comparedPatterns++;
+		}
+
+		assertTrue(comparedPatterns > 0, "No rules pattern has been compiled by the linear engine");
+	}
+
+	@Test
+	public void constructsMatchLikeJavaRegex() throws IOException, URISyntaxException {
+		List<String> lines = getSampleLines();
+
+		for (String pattern : CONSTRUCT_PATTERNS) {
+			LinearRegex linearRegex = LinearRegex.compile(pattern);
+			assertNotNull(linearRegex, "The linear engine didn't compile " + pattern);
+			assertSameMatches(pattern, linearRegex, lines);
+		}
+	}
+
+	@Test
+	public void unsupportedConstructsAreNotCompiled() {
+		for (String pattern : UNSUPPORTED_PATTERNS) {
+			assertNull(LinearRegex.compile(pattern), "The linear engine compiled the unsupported " + pattern);
+		}
+	}
+
+	// --------------------- Helper functions ---------------------
+
+	// Helper function to compare the matches of both engines on every line, reporting the first lines where they differ
+	private static void assertSameMatches(String pattern, LinearRegex linearRegex, List<String> lines) {
+		Matcher javaMatcher = Pattern.compile(pattern).matcher("");
+		LineMatcher linearMatcher = linearRegex.matcher();
+
+		List<String> differences = new ArrayList<>();
+		for (String line : lines) {
+			String expected = javaMatcher.reset(line).find() ? getMatchingString(javaMatcher) : null;
+			String actual = linearMatcher.find(line);
+			if (!Objects.equals(expected, actual) && differences.size() < 5) {
+				differences.add("\"" + line + "\": expected " + expected + ", found " + actual);
+			}
+		}
+
+		assertTrue(differences.isEmpty(), "Different matches of " + pattern + " on " + String.join("; ", differences));
+	}
+
+	// Helper function to get the caught string of a java.util.regex match, in the same way CodeReader does
+	private static String getMatchingString(Matcher matcher) {
+		if (matcher.groupCount() < 1) return "";
+		String matchGroup = matcher.group(1);
+		return (matchGroup == null) ? "" : matchGroup;
+	}
+
+	// Helper function to read the patterns of every rules file, in the same way CodeReader reads them
+	private static Set<String> getRulesPatterns() throws IOException, URISyntaxException {
+		Set<String> patterns = new LinkedHashSet<>();
+		for (Path rulesFile : getRulesFiles()) {
+			for (String line : Files.readAllLines(rulesFile, StandardCharsets.UTF_8)) {
+				line = line.trim();
+				if (!line.startsWith("pattern:") || line.indexOf('"') == line.lastIndexOf('"')) continue;
+				patterns.add(line.substring(line.indexOf('"') + 1, line.lastIndexOf('"')));
+			}
+		}
+		return patterns;
+	}
+
+	// Helper function to get the sample lines: the written ones, the lines of the rules files and the lines of the application sources
+	private static List<String> getSampleLines() throws IOException, URISyntaxException {
+		List<String> lines = new ArrayList<>(SAMPLE_LINES);
+		for (Path rulesFile : getRulesFiles()) {
+			lines.addAll(Files.readAllLines(rulesFile, StandardCharsets.UTF_8));
+		}
+
+		Path sourcesDirectory = Path.of("src", "main", "java");
+		if (Files.isDirectory(sourcesDirectory)) {
+			try (Stream<Path> sources = Files.walk(sourcesDirectory)) {
+				for (Path source : sources.filter(path -> path.toString().endsWith(".java")).sorted().toList()) {
+					lines.addAll(Files.readAllLines(source, StandardCharsets.UTF_8));
+				}
+			}
+		}
+		return lines;
+	}
+
+	// Helper function to list the rules files, which are the ones of the code file types inside file_types.json, found in the same way CodeReader does.
+	// The directory of the rules files can also contain the compiled classes, so it isn't listed
+	private static List<Path> getRulesFiles() throws IOException, URISyntaxException {
+		Map<String, FileTypeData> fileTypes = new ObjectMapper().readValue(Objects.requireNonNull(DirectoryAnalyzer.class.getResourceAsStream("file_types.json")), new TypeReference<>() {
+		});
+
+		List<Path> rulesFiles = new ArrayList<>();
+		for (Map.Entry<String, FileTypeData> entry : fileTypes.entrySet()) {
+			if (!entry.getValue().code()) continue;
+
+			URL rulesFile = CodeReader.class.getResource(entry.getKey());
+			if (rulesFile != null) rulesFiles.add(Path.of(rulesFile.toURI()));
+		}
+
+		assertFalse(rulesFiles.isEmpty(), "No rules file has been found");
+		rulesFiles.sort(Comparator.naturalOrder());
+		return rulesFiles;
+	}
+}